@@ -30,10 +30,23 @@ import cz.msebera.android.httpclient.Header;
 
 public class MainActivity extends AppCompatActivity {
     private String error = null;
-    private List<String> participantNames = new ArrayList<>();
-    private ArrayAdapter<String> participantAdapter;
-    private List<String> eventNames = new ArrayList<>();
-    private ArrayAdapter<String> eventAdapter;
+    private PagedList participants = new PagedList("participants");
+    private PagedList events = new PagedList("events");
+
+    // A list the backend returns one page at a time, with the cursor of the
+    // next page if there is one, and a count of the refreshes so that a page
+    // requested before the last refresh is dropped
+    private static class PagedList {
+        final String restFunctionName;
+        final List<String> names = new ArrayList<>();
+        ArrayAdapter<String> adapter;
+        String next;
+        int loads;
+
+        PagedList(String restFunctionName) {
+            this.restFunctionName = restFunctionName;
+        }
+    }
 
     //called first even before showing up
     @Override
@@ -147,8 +160,18 @@ public class MainActivity extends AppCompatActivity {
     }
 
     public void refreshLists(View v) {
-        refreshList(participantAdapter, participantNames, "participants");
-        refreshList(eventAdapter, eventNames, "events");
+        refreshList(participants, false);
+        refreshList(events, false);
+    }
+
+    // Appends the next page of the lists that have more
+    public void loadMore(View v) {
+        if (participants.next != null) {
+            refreshList(participants, true);
+        }
+        if (events.next != null) {
+            refreshList(events, true);
+        }
     }
 
     public void addEvent(View v) {
@@ -219,34 +242,54 @@ public class MainActivity extends AppCompatActivity {
         Spinner participantSpinner = (Spinner) findViewById(R.id.participantspinner);
         Spinner eventSpinner = (Spinner) findViewById(R.id.eventspinner);
 
-        participantAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, participantNames);
-        participantAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        participantSpinner.setAdapter(participantAdapter);
+        participants.adapter = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, participants.names);
+        participants.adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        participantSpinner.setAdapter(participants.adapter);
 
-        eventAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, eventNames);
-        eventAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        eventSpinner.setAdapter(eventAdapter);
+        events.adapter = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, events.names);
+        events.adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        eventSpinner.setAdapter(events.adapter);
 
         // Get initial content for spinners
         refreshLists(this.getCurrentFocus());
     }
 
-    private void refreshList(final ArrayAdapter<String> adapter, final List<String> names, String restFunctionName) {
-        HttpUtils.get(restFunctionName, new RequestParams(), new JsonHttpResponseHandler() {
+    // Loads the first page of the list, or appends the next one. The cursor of
+    // the page after it comes in a header and is kept for loadMore.
+    private void refreshList(final PagedList list, final boolean more) {
+        final int load = more ? list.loads : ++list.loads;
+        final String after = more ? list.next : null;
+        RequestParams rp = new RequestParams();
+        if (after != null) {
+            rp.add("after", after);
+        }
+        HttpUtils.get(list.restFunctionName, rp, new JsonHttpResponseHandler() {
 
             @Override
             public void onSuccess(int statusCode, Header[] headers, JSONArray response) {
-                names.clear();
-                names.add("Please select...");
+                // the list was refreshed, or the page appended, meanwhile
+                if (load != list.loads || (more && !after.equals(list.next))) {
+                    return;
+                }
+                if (!more) {
+                    list.names.clear();
+                    list.names.add("Please select...");
+                }
                 for (int i = 0; i < response.length(); i++) {
                     try {
-                        names.add(response.getJSONObject(i).getString("name"));
+                        list.names.add(response.getJSONObject(i).getString("name"));
                     } catch (Exception e) {
                         error += e.getMessage();
                     }
                     refreshErrorMessage();
                 }
-                adapter.notifyDataSetChanged();
+                list.adapter.notifyDataSetChanged();
+                list.next = null;
+                for (Header header : headers) {
+                    if (header.getName().equalsIgnoreCase("X-Next-Cursor")) {
+                        list.next = header.getValue();
+                    }
+                }
             }
 
             @Override
@@ -1,21 +1,34 @@
 package ca.mcgill.ecse321.eventregistration;
 
+import java.sql.SQLException;
+
 import org.modelmapper.ModelMapper;
 import org.modelmapper.config.Configuration.AccessLevel;
 import org.modelmapper.convention.NamingConventions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.support.SpringBootServletInitializer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
+import ca.mcgill.ecse321.eventregistration.controller.EventRegistrationRestController;
+import ca.mcgill.ecse321.eventregistration.controller.ResponseCache;
 import ca.mcgill.ecse321.eventregistration.controller.configuration.AndroidProperties;
+import ca.mcgill.ecse321.eventregistration.controller.configuration.PersistenceProperties;
+import ca.mcgill.ecse321.eventregistration.controller.configuration.ResponseCacheProperties;
 import ca.mcgill.ecse321.eventregistration.controller.configuration.WebFrontendProperties;
+import ca.mcgill.ecse321.eventregistration.dto.DtoMapper;
+import ca.mcgill.ecse321.eventregistration.model.Registration;
 import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
+import ca.mcgill.ecse321.eventregistration.persistence.JdbcRegistrationRepository;
 import ca.mcgill.ecse321.eventregistration.persistence.PersistenceXStream;
+import ca.mcgill.ecse321.eventregistration.persistence.RegistrationRepository;
+import ca.mcgill.ecse321.eventregistration.persistence.XStreamRegistrationRepository;
+import ca.mcgill.ecse321.eventregistration.service.SingleWriter;
 
 @SpringBootApplication
 public class EventRegistrationSpringApplication extends SpringBootServletInitializer {
@@ -34,10 +47,44 @@ public class EventRegistrationSpringApplication extends SpringBootServletInitial
 		return modelMapper;
 	}
 
+	@Bean
+	public DtoMapper dtoMapper(ModelMapper modelMapper) {
+		return new DtoMapper(modelMapper);
+	}
+
+	@Bean
+	public ResponseCache responseCache() {
+		return new ResponseCache(responseCacheProperties.getMaxEntries(), responseCacheProperties.getMaxBytes());
+	}
+
+	@Bean
+	public RegistrationRepository registrationRepository() throws SQLException {
+		if (persistenceProperties.getBackend() == PersistenceProperties.Backend.H2) {
+			JdbcRegistrationRepository repository = new JdbcRegistrationRepository(persistenceProperties.getJdbcUrl());
+			repository.setImportFilename(persistenceProperties.getFilename());
+			return repository;
+		}
+		PersistenceXStream.setSnapshotFormat(persistenceProperties.getSnapshotFormat());
+		if (persistenceProperties.isWriteAheadLog()) {
+			PersistenceXStream.enableWriteAheadLog(persistenceProperties.getCompactionThreshold());
+			PersistenceXStream.setDurability(persistenceProperties.getDurability(),
+					persistenceProperties.getGroupCommitDelay());
+		}
+		return new XStreamRegistrationRepository(persistenceProperties.getFilename());
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "persistence", name = "single-writer", havingValue = "true")
+	public SingleWriter singleWriter(RegistrationRepository repository) {
+		return new SingleWriter(repository, persistenceProperties.getWriterQueueCapacity());
+	}
+
 	// TODO add a Bean to provide a registration manager
 	@Bean
-	public RegistrationManager regMan() {
-		return PersistenceXStream.initializeModelManager(PersistenceXStream.getFilename());
+	public RegistrationManager regMan(RegistrationRepository repository) {
+		RegistrationManager rm = repository.load();
+		Registration.getIdAllocator().setReservation(repository::reserveIds, persistenceProperties.getIdBlockSize());
+		return rm;
 	}
 
 	@Autowired
@@ -45,6 +92,12 @@ public class EventRegistrationSpringApplication extends SpringBootServletInitial
 	//
 	@Autowired
 	private WebFrontendProperties webFrontendProperties;
+	//
+	@Autowired
+	private PersistenceProperties persistenceProperties;
+	//
+	@Autowired
+	private ResponseCacheProperties responseCacheProperties;
 
 	// Enable CORS globally
 	@Bean
@@ -57,7 +110,9 @@ public class EventRegistrationSpringApplication extends SpringBootServletInitial
 				// Allow android client
 				String androidUrl = "http://" + androidProperties.getIp() + ":" + androidProperties.getPort();
 				// For debug purposes, allow connecting  from localhost as well
-				registry.addMapping("/**").allowedOrigins(frontendUrl, androidUrl, "http://localhost:8087", "http://127.0.0.1:8087");
+				registry.addMapping("/**").allowedOrigins(frontendUrl, androidUrl, "http://localhost:8087", "http://127.0.0.1:8087")
+						// let the web client read the cursor of the next page
+						.exposedHeaders(EventRegistrationRestController.NEXT_CURSOR_HEADER);
 			}
 		};
 	}
@@ -1,70 +1,209 @@
 package ca.mcgill.ecse321.eventregistration.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.sql.Date;
 import java.sql.Time;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import ca.mcgill.ecse321.eventregistration.controller.configuration.ExportProperties;
+import ca.mcgill.ecse321.eventregistration.dto.DtoMapper;
 import ca.mcgill.ecse321.eventregistration.dto.EventDto;
 import ca.mcgill.ecse321.eventregistration.dto.ParticipantDto;
 import ca.mcgill.ecse321.eventregistration.dto.RegistrationDto;
+import ca.mcgill.ecse321.eventregistration.dto.SeatHoldDto;
 import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.ModelView;
 import ca.mcgill.ecse321.eventregistration.model.Participant;
 import ca.mcgill.ecse321.eventregistration.model.Registration;
 import ca.mcgill.ecse321.eventregistration.service.EventRegistrationService;
 import ca.mcgill.ecse321.eventregistration.service.InvalidInputException;
+import ca.mcgill.ecse321.eventregistration.service.Page;
+import ca.mcgill.ecse321.eventregistration.service.SeatHold;
 
 @RestController
 public class EventRegistrationRestController {
 
+	// Lists are returned one page at a time; this header holds the cursor to pass
+	// as "after" to get the next page, and is missing on the last page
+	public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
 	@Autowired
 	private EventRegistrationService service;
 
 	@Autowired
-	private ModelMapper modelMapper;
+	private DtoMapper dtoMapper;
+
+	// The same mapper Spring encodes the other responses with
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private ResponseCache responseCache;
+
+	@Autowired
+	private ExportProperties exportProperties;
+
+	// ETags list the versions a response was built from, after the start time of
+	// the server, as versions start over when the model is loaded again
+	private final String etagPrefix = "\"" + Long.toString(System.currentTimeMillis(), 36);
 
 	/**
 	 * SHOW
 	 */
 
 	@GetMapping(value = { "/participants/{name}", "/participants/{name}/" })
-	public ParticipantDto showParticipant(@PathVariable("name") String name) throws InvalidInputException {
-		return convertToDto(service.findParticipant(name));
+	public ResponseEntity<byte[]> showParticipant(@PathVariable("name") String name, WebRequest request)
+			throws InvalidInputException {
+		ModelView view = service.getModelView();
+		if (notModified(request, published(view, service.getParticipantVersion(name))))
+			return null;
+		return cached("participant:" + name, view, () -> ResponseEntity.ok(convertToDto(service.findParticipant(name))));
 	}
 
-	@GetMapping(value = { "/events/{name}", "/events/{name}/" })
-	public EventDto showEvent(@PathVariable("name") String name) throws InvalidInputException {
-		Event event = service.findEvent(name);
-		return convertToDto(event);
+	// Participants waiting for a seat, longest waiting first
+	@GetMapping(value = { "/events/{name}/waitlist", "/events/{name}/waitlist/" })
+	public List<ParticipantDto> showWaitlist(@PathVariable("name") String name, WebRequest request)
+			throws InvalidInputException {
+		// participants are dropped from the waitlist when they are deleted
+		ModelView view = service.getModelView();
+		if (notModified(request, published(view, service.getEventVersion(name)), service.getWaitlistVersion(name),
+				view.getParticipantsVersion()))
+			return null;
+		List<ParticipantDto> participants = new ArrayList<>();
+		for (Participant p : service.getWaitlist(service.findEvent(name))) {
+			participants.add(new ParticipantDto(p.getName()));
+		}
+		return participants;
 	}
 
-	@GetMapping(value = { "/events", "/events/" })
-	public List<EventDto> findAllEvents() throws InvalidInputException {
+	// Events of the participant that overlap another one of their events
+	@GetMapping(value = { "/participants/{name}/conflicts", "/participants/{name}/conflicts/" })
+	public List<EventDto> showConflicts(@PathVariable("name") String name, WebRequest request)
+			throws InvalidInputException {
+		if (notModified(request, published(service.getModelView(), service.getParticipantVersion(name))))
+			return null;
 		List<EventDto> events = new ArrayList<>();
-		for (Event e : service.findAllEvents()) {
+		for (Event e : service.findConflicts(service.findParticipant(name))) {
 			events.add(convertToDto(e));
 		}
 		return events;
 	}
 
+	@GetMapping(value = { "/events/{name}", "/events/{name}/" })
+	public ResponseEntity<byte[]> showEvent(@PathVariable("name") String name, WebRequest request)
+			throws InvalidInputException {
+		ModelView view = service.getModelView();
+		if (notModified(request, published(view, service.getEventVersion(name))))
+			return null;
+		return cached("event:" + name, view, () -> ResponseEntity.ok(convertToDto(service.findEvent(name))));
+	}
+
+	// Without a range the events are listed in the order they were created,
+	// otherwise sorted by date and start time, unless another sort is given
+	@GetMapping(value = { "/events", "/events/" })
+	public ResponseEntity<byte[]> findAllEvents(@RequestParam(required = false) Date from,
+			@RequestParam(required = false) Date to, @RequestParam(required = false) String sort,
+			@RequestParam(required = false) String after, @RequestParam(defaultValue = "100") int limit,
+			WebRequest request) throws InvalidInputException {
+		ModelView view = service.getModelView();
+		if (notModified(request, view.getEventsVersion()))
+			return null;
+		return cached("events:" + from + ":" + to + ":" + sort + ":" + after + ":" + limit, view, () -> {
+			Page<Event> page = service.findEvents(sort, from, to, after, limit);
+			List<EventDto> events = new ArrayList<>(page.getItems().size());
+			for (Event e : page.getItems()) {
+				events.add(convertToDto(e));
+			}
+			return withNextCursor(events, page);
+		});
+	}
+
 	@GetMapping(value = { "/participants", "/participants/" })
-	public List<ParticipantDto> findAllParticipants() {
-		List<ParticipantDto> participants = new ArrayList<>();
-		for (Participant participant : service.findAllParticipants()) {
-			participants.add(convertToDto(participant));
+	public ResponseEntity<byte[]> findAllParticipants(@RequestParam(required = false) String sort,
+			@RequestParam(required = false) String after, @RequestParam(defaultValue = "100") int limit,
+			WebRequest request) throws InvalidInputException {
+		// the events of the participants come with their registrations
+		ModelView view = service.getModelView();
+		if (notModified(request, view.getParticipantsVersion(), view.getRegistrationsVersion()))
+			return null;
+		return cached("participants:" + sort + ":" + after + ":" + limit, view, () -> {
+			Page<Participant> page = service.findParticipants(sort, after, limit);
+			return withNextCursor(convertToDtos(page.getItems()), page);
+		});
+	}
+
+	// All events, or all participants with their events, as one JSON array that
+	// is written entity by entity while iterating a snapshot of the model, so
+	// memory use does not grow with the size of the encoded list. The events of
+	// the participants come from the registrations of the same snapshot, so
+	// changes during the export do not show. Gzipped if the client accepts it.
+	@GetMapping(value = { "/export/events", "/export/events/" })
+	public void exportEvents(WebRequest request, HttpServletResponse response) throws IOException {
+		boolean gzip = acceptsGzip(request);
+		ModelView view = service.getModelView();
+		if (notModified(request, gzip ? "gzip" : "", view.getEventsVersion()))
+			return;
+		List<Event> events = view.getEvents();
+		try (JsonGenerator generator = startStream(response, gzip)) {
+			generator.writeStartArray();
+			for (Event e : events) {
+				generator.writeObject(convertToDto(e));
+			}
+			generator.writeEndArray();
+		}
+	}
+
+	@GetMapping(value = { "/export/participants", "/export/participants/" })
+	public void exportParticipants(WebRequest request, HttpServletResponse response) throws IOException {
+		boolean gzip = acceptsGzip(request);
+		ModelView view = service.getModelView();
+		if (notModified(request, gzip ? "gzip" : "", view.getParticipantsVersion(), view.getRegistrationsVersion()))
+			return;
+		List<Participant> participants = view.getParticipants();
+		Map<Participant, List<Event>> eventsByParticipant = service.getEventsByParticipant(view);
+		try (JsonGenerator generator = startStream(response, gzip)) {
+			generator.writeStartArray();
+			for (Participant p : participants) {
+				generator.writeStartObject();
+				generator.writeStringField("name", p.getName());
+				generator.writeArrayFieldStart("events");
+				for (Event e : eventsByParticipant.getOrDefault(p, Collections.emptyList())) {
+					generator.writeObject(convertToDto(e));
+				}
+				generator.writeEndArray();
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
 		}
-		return participants;
 	}
 
 	@RequestMapping("/")
@@ -73,7 +212,10 @@ public class EventRegistrationRestController {
 	}
 
 	@GetMapping(value = { "/registrations/participant/{name}", "/registrations/participant/{name}/" })
-	public List<EventDto> getEventsOfParticipant(@PathVariable("name") ParticipantDto pDto) {
+	public List<EventDto> getEventsOfParticipant(@PathVariable("name") ParticipantDto pDto, WebRequest request)
+			throws InvalidInputException {
+		if (notModified(request, published(service.getModelView(), service.getParticipantVersion(pDto.getName()))))
+			return null;
 		Participant p = convertToDomainObject(pDto);
 		return createEventDtosForParticipant(p);
 	}
@@ -93,13 +235,13 @@ public class EventRegistrationRestController {
 	@PostMapping(value = { "/events/{name}", "/events/{name}/" })
 	public EventDto createEvent(@PathVariable("name") String name, @RequestParam Date date,
 			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.TIME, pattern = "HH:mm") LocalTime startTime,
-			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.TIME, pattern = "HH:mm") LocalTime endTime)
-			throws InvalidInputException {
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.TIME, pattern = "HH:mm") LocalTime endTime,
+			@RequestParam(defaultValue = "0") int capacity) throws InvalidInputException {
 		@SuppressWarnings("deprecation")
 		Time startTimeSql = new Time(startTime.getHour(), startTime.getMinute(), 0);
 		@SuppressWarnings("deprecation")
 		Time endTimeSql = new Time(endTime.getHour(), endTime.getMinute(), 0);
-		Event event = service.createEvent(name, date, startTimeSql, endTimeSql);
+		Event event = service.createEvent(name, date, startTimeSql, endTimeSql, capacity);
 		return convertToDto(event);
 	}
 
@@ -114,27 +256,157 @@ public class EventRegistrationRestController {
 		return convertToDto(r, p, e);
 	}
 
+	@DeleteMapping(value = { "/register", "/register/" })
+	public void unregisterParticipantFromEvent(@RequestParam(name = "participant") ParticipantDto pDto,
+			@RequestParam(name = "event") EventDto eDto) throws InvalidInputException {
+		service.unregister(service.findParticipant(pDto.getName()), service.findEvent(eDto.getName()));
+	}
+
+	// Deletes the participant with their registrations
+	@DeleteMapping(value = { "/participants/{name}", "/participants/{name}/" })
+	public void deleteParticipant(@PathVariable("name") String name) throws InvalidInputException {
+		service.deleteParticipant(service.findParticipant(name));
+	}
+
+	// Deletes the event with its registrations
+	@DeleteMapping(value = { "/events/{name}", "/events/{name}/" })
+	public void deleteEvent(@PathVariable("name") String name) throws InvalidInputException {
+		service.deleteEvent(service.findEvent(name));
+	}
+
+	// Holds a seat for the given number of minutes, until it is confirmed or
+	// released
+	@PostMapping(value = { "/holds", "/holds/" })
+	public SeatHoldDto holdSeat(@RequestParam(name = "participant") ParticipantDto pDto,
+			@RequestParam(name = "event") EventDto eDto, @RequestParam int minutes) throws InvalidInputException {
+		SeatHold hold = service.hold(service.findParticipant(pDto.getName()), service.findEvent(eDto.getName()),
+				minutes);
+		return new SeatHoldDto(hold.getId(), hold.getParticipant().getName(), hold.getEvent().getName(),
+				hold.getExpiresAt());
+	}
+
+	@PostMapping(value = { "/holds/{id}/confirm", "/holds/{id}/confirm/" })
+	public RegistrationDto confirmSeat(@PathVariable("id") long id) throws InvalidInputException {
+		Registration r = service.confirm(id);
+		return convertToDto(r, r.getParticipant(), r.getEvent());
+	}
+
+	@DeleteMapping(value = { "/holds/{id}", "/holds/{id}/" })
+	public void releaseSeat(@PathVariable("id") long id) throws InvalidInputException {
+		service.release(id);
+	}
+
+	private boolean acceptsGzip(WebRequest request) {
+		String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		return exportProperties.isGzip() && acceptEncoding != null && acceptEncoding.contains("gzip");
+	}
+
+	// The generator encodes with the same mapper as the other responses and
+	// writes through a small buffer to the servlet output stream
+	private JsonGenerator startStream(HttpServletResponse response, boolean gzip) throws IOException {
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		OutputStream out = response.getOutputStream();
+		if (gzip) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			out = new GZIPOutputStream(out, 8192);
+		}
+		return objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+	}
+
+	// Answers 304 Not Modified if the client already has the response built from
+	// the given versions, before anything is looked up or encoded, and otherwise
+	// sets the ETag. The versions are read before the response is built, so the
+	// response is never older than its ETag claims. Without an entity, i.e. a
+	// negative version, there is no ETag.
+	private boolean notModified(WebRequest request, long... versions) {
+		return notModified(request, "", versions);
+	}
+
+	// Representations that differ in more than the versions, e.g. gzipped ones,
+	// need a variant to keep their ETags apart
+	private boolean notModified(WebRequest request, String variant, long... versions) {
+		StringBuilder etag = new StringBuilder(etagPrefix);
+		for (long version : versions) {
+			if (version < 0)
+				return false;
+			etag.append('-').append(version);
+		}
+		if (!variant.isEmpty())
+			etag.append('-').append(variant);
+		return request.checkNotModified(etag.append('"').toString());
+	}
+
+	// The version of a participant or event is set just before the view with its
+	// change is published. Until the view that was read holds the change, the
+	// response can not be told apart from the changed one, so it gets no ETag.
+	private static long published(ModelView view, long version) {
+		return version > view.getVersion() ? -1 : version;
+	}
+
+	private interface ResponseBuilder {
+		ResponseEntity<?> build() throws InvalidInputException;
+	}
+
+	// Returns the cached encoding of the response while the model is unchanged,
+	// otherwise builds and encodes the response and caches it. The entry is keyed
+	// on the version of the view the ETag was read from, before the response is
+	// built, so an entry is never older than its version.
+	private ResponseEntity<byte[]> cached(String key, ModelView view, ResponseBuilder builder)
+			throws InvalidInputException {
+		long version = view.getVersion();
+		ResponseCache.Entry entry = responseCache.get(key, version);
+		if (entry == null) {
+			ResponseEntity<?> response = builder.build();
+			try {
+				entry = new ResponseCache.Entry(version, response.getHeaders(),
+						objectMapper.writeValueAsBytes(response.getBody()));
+			} catch (JsonProcessingException e) {
+				throw new UncheckedIOException(e);
+			}
+			responseCache.put(key, entry);
+		}
+		return ResponseEntity.ok().headers(entry.getHeaders()).contentType(MediaType.APPLICATION_JSON_UTF8)
+				.body(entry.getBody());
+	}
+
+	private static <T> ResponseEntity<List<T>> withNextCursor(List<T> body, Page<?> page) {
+		if (page.getNext() == null)
+			return ResponseEntity.ok(body);
+		return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, page.getNext()).body(body);
+	}
+
 	// Conversion methods (not part of the API)
 	private EventDto convertToDto(Event e) {
-		// In simple cases, the mapper service is convenient
-		return modelMapper.map(e, EventDto.class);
+		return dtoMapper.map(e);
 	}
 
 	private ParticipantDto convertToDto(Participant p) {
-		ParticipantDto participantDto = modelMapper.map(p, ParticipantDto.class);
+		ParticipantDto participantDto = dtoMapper.map(p);
 		participantDto.setEvents(createEventDtosForParticipant(p));
 		return participantDto;
 	}
 
-	private Participant convertToDomainObject(ParticipantDto pDto) {
-		// Mapping DTO to the domain object without using the mapper
-		List<Participant> allParticipants = service.findAllParticipants();
-		for (Participant participant : allParticipants) {
-			if (participant.getName().equals(pDto.getName())) {
-				return participant;
+	private List<ParticipantDto> convertToDtos(List<Participant> participants) {
+		// Only the registrations of the participants of the page are looked at, and
+		// an event shared by several of them is mapped only once
+		Map<String, EventDto> eventDtos = new HashMap<>();
+		List<ParticipantDto> participantDtos = new ArrayList<>(participants.size());
+		for (Participant participant : participants) {
+			ParticipantDto participantDto = dtoMapper.map(participant);
+			List<EventDto> events = new ArrayList<>();
+			for (Event e : service.getEventsForParticipant(participant)) {
+				events.add(eventDtos.computeIfAbsent(e.getName(), name -> convertToDto(e)));
 			}
+			participantDto.setEvents(events);
+			participantDtos.add(participantDto);
 		}
-		return null;
+		return participantDtos;
+	}
+
+	private Participant convertToDomainObject(ParticipantDto pDto) throws InvalidInputException {
+		// Mapping DTO to the domain object without using the mapper
+		return service.findParticipant(pDto.getName());
 	}
 
 	private List<EventDto> createEventDtosForParticipant(Participant p) {
@@ -150,7 +422,7 @@ public class EventRegistrationRestController {
 
 	private RegistrationDto convertToDto(Registration r, Participant p, Event e) {
 		// Now using the mapper would not help too much
-		// RegistrationDto registrationDto = modelMapper.map(r, RegistrationDto.class);
+		// RegistrationDto registrationDto = dtoMapper.map(r, RegistrationDto.class);
 		// Manual conversion instead
 		EventDto eDto = convertToDto(e);
 		ParticipantDto pDto = convertToDto(p);
@@ -0,0 +1,88 @@
+package ca.mcgill.ecse321.eventregistration.controller;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Least recently used cache of responses already encoded as JSON. Every entry
+ * remembers the version of the model it was encoded at and is only returned
+ * while the model is still at that version, so a write invalidates all entries
+ * at once without touching them. Outdated entries are replaced when their
+ * resource is read again, or evicted when the cache is full.
+ */
+public class ResponseCache {
+
+	/**
+	 * An encoded response.
+	 */
+	public static final class Entry {
+		private final long version;
+		private final HttpHeaders headers;
+		private final byte[] body;
+
+		public Entry(long version, HttpHeaders headers, byte[] body) {
+			this.version = version;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+
+		// the key and the entry objects are counted roughly
+		private long size(String key) {
+			return body.length + 2L * key.length() + 128;
+		}
+	}
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+
+	public ResponseCache(int maxEntries, long maxBytes) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return the response encoded at the given version of the model, or null
+	 */
+	public synchronized Entry get(String key, long version) {
+		Entry entry = entries.get(key);
+		return entry == null || entry.version != version ? null : entry;
+	}
+
+	/**
+	 * Keeps the response, evicting the least recently used ones as needed.
+	 * Responses larger than the whole cache are not kept.
+	 */
+	public synchronized void put(String key, Entry entry) {
+		long size = entry.size(key);
+		if (maxEntries < 1 || size > maxBytes)
+			return;
+		Entry replaced = entries.put(key, entry);
+		if (replaced != null)
+			bytes -= replaced.size(key);
+		bytes += size;
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while (entries.size() > maxEntries || bytes > maxBytes) {
+			Map.Entry<String, Entry> evicted = eldest.next();
+			bytes -= evicted.getValue().size(evicted.getKey());
+			eldest.remove();
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+}
@@ -0,0 +1,22 @@
+package ca.mcgill.ecse321.eventregistration.controller.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "export")
+public class ExportProperties {
+
+	/**
+	 * Whether exported lists are gzipped for clients that accept it
+	 */
+	private boolean gzip = true;
+
+	public boolean isGzip() {
+		return gzip;
+	}
+
+	public void setGzip(boolean gzip) {
+		this.gzip = gzip;
+	}
+}
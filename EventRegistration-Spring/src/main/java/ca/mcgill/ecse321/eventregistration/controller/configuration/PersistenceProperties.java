@@ -0,0 +1,157 @@
+package ca.mcgill.ecse321.eventregistration.controller.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import ca.mcgill.ecse321.eventregistration.persistence.Durability;
+import ca.mcgill.ecse321.eventregistration.persistence.SnapshotFormat;
+
+@Component
+@ConfigurationProperties(prefix = "persistence")
+public class PersistenceProperties {
+
+	public enum Backend {
+		XSTREAM, H2
+	}
+
+	/**
+	 * Where the model is stored: xstream (snapshot file, optionally with a
+	 * write-ahead log) or h2 (embedded database)
+	 */
+	private Backend backend = Backend.XSTREAM;
+	/**
+	 * The JDBC url of the embedded database used by the h2 backend
+	 */
+	private String jdbcUrl = "jdbc:h2:file:./data";
+	/**
+	 * The file holding the model snapshot. The h2 backend imports it into an
+	 * empty database.
+	 */
+	private String filename = "data.xml";
+	/**
+	 * The format new snapshots are written in: xml or binary. Existing snapshots
+	 * are read in either format.
+	 */
+	private SnapshotFormat snapshotFormat = SnapshotFormat.XML;
+	/**
+	 * Whether mutations are appended to a write-ahead log instead of rewriting
+	 * the snapshot every time
+	 */
+	private boolean writeAheadLog = false;
+	/**
+	 * The number of log records after which the log is compacted into a new
+	 * snapshot
+	 */
+	private int compactionThreshold = 1000;
+	/**
+	 * How long a mutation waits for its log record to reach the disk: sync (fsync
+	 * per mutation), group (concurrent mutations share one fsync) or async
+	 */
+	private Durability durability = Durability.GROUP;
+	/**
+	 * The time in milliseconds a group of log records may wait for further
+	 * records before it is written
+	 */
+	private long groupCommitDelay = 0;
+	/**
+	 * Whether all mutations are applied by a single writer thread that persists
+	 * them in batches
+	 */
+	private boolean singleWriter = false;
+	/**
+	 * The number of mutations that may wait for the single writer
+	 */
+	private int writerQueueCapacity = 1024;
+	/**
+	 * The number of registration ids reserved in storage at a time
+	 */
+	private int idBlockSize = 1000;
+
+	public Backend getBackend() {
+		return backend;
+	}
+
+	public void setBackend(Backend backend) {
+		this.backend = backend;
+	}
+
+	public String getJdbcUrl() {
+		return jdbcUrl;
+	}
+
+	public void setJdbcUrl(String jdbcUrl) {
+		this.jdbcUrl = jdbcUrl;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	public void setFilename(String filename) {
+		this.filename = filename;
+	}
+
+	public SnapshotFormat getSnapshotFormat() {
+		return snapshotFormat;
+	}
+
+	public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+		this.snapshotFormat = snapshotFormat;
+	}
+
+	public boolean isWriteAheadLog() {
+		return writeAheadLog;
+	}
+
+	public void setWriteAheadLog(boolean writeAheadLog) {
+		this.writeAheadLog = writeAheadLog;
+	}
+
+	public int getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	public void setCompactionThreshold(int compactionThreshold) {
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	public void setDurability(Durability durability) {
+		this.durability = durability;
+	}
+
+	public long getGroupCommitDelay() {
+		return groupCommitDelay;
+	}
+
+	public void setGroupCommitDelay(long groupCommitDelay) {
+		this.groupCommitDelay = groupCommitDelay;
+	}
+
+	public boolean isSingleWriter() {
+		return singleWriter;
+	}
+
+	public void setSingleWriter(boolean singleWriter) {
+		this.singleWriter = singleWriter;
+	}
+
+	public int getWriterQueueCapacity() {
+		return writerQueueCapacity;
+	}
+
+	public void setWriterQueueCapacity(int writerQueueCapacity) {
+		this.writerQueueCapacity = writerQueueCapacity;
+	}
+
+	public int getIdBlockSize() {
+		return idBlockSize;
+	}
+
+	public void setIdBlockSize(int idBlockSize) {
+		this.idBlockSize = idBlockSize;
+	}
+}
@@ -0,0 +1,34 @@
+package ca.mcgill.ecse321.eventregistration.controller.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "response-cache")
+public class ResponseCacheProperties {
+
+	/**
+	 * The number of encoded responses kept at most, 0 to disable the cache
+	 */
+	private int maxEntries = 10000;
+	/**
+	 * The total size in bytes of the encoded responses kept at most
+	 */
+	private long maxBytes = 16 * 1024 * 1024;
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+}
@@ -0,0 +1,49 @@
+package ca.mcgill.ecse321.eventregistration.dto;
+
+import org.modelmapper.ModelMapper;
+
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+
+/**
+ * Converts model objects to DTOs. Events and participants, which the list
+ * endpoints convert by the thousand, are copied with plain getter and setter
+ * calls that the JIT inlines. Other types are mapped by ModelMapper, which
+ * matches the fields by reflection.
+ */
+public class DtoMapper {
+
+	private final ModelMapper fallback;
+
+	public DtoMapper(ModelMapper fallback) {
+		this.fallback = fallback;
+	}
+
+	public EventDto map(Event e) {
+		EventDto eventDto = new EventDto(e.getName(), e.getEventDate(), e.getStartTime(), e.getEndTime());
+		eventDto.setCapacity(e.getCapacity());
+		return eventDto;
+	}
+
+	/**
+	 * @return the DTO of the participant, without their events
+	 */
+	public ParticipantDto map(Participant p) {
+		ParticipantDto participantDto = new ParticipantDto();
+		participantDto.setName(p.getName());
+		return participantDto;
+	}
+
+	/**
+	 * Converts events and participants with the methods above and any other type
+	 * with ModelMapper.
+	 */
+	public <D> D map(Object source, Class<D> destinationType) {
+		if (source instanceof Event && destinationType == EventDto.class)
+			return destinationType.cast(map((Event) source));
+		if (source instanceof Participant && destinationType == ParticipantDto.class)
+			return destinationType.cast(map((Participant) source));
+		return fallback.map(source, destinationType);
+	}
+
+}
@@ -10,6 +10,7 @@ public class EventDto {
 	private Date eventDate;
 	private Time startTime;
 	private Time endTime;
+	private int capacity;
 
 	public EventDto() {
 
@@ -59,4 +60,12 @@ public class EventDto {
 		this.startTime = startTime;
 	}
 
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
 }
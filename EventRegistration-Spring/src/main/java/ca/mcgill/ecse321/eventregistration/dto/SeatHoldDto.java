@@ -0,0 +1,51 @@
+package ca.mcgill.ecse321.eventregistration.dto;
+
+public class SeatHoldDto {
+	private long id;
+	private String participant;
+	private String event;
+	private long expiresAt;
+
+	public SeatHoldDto() {
+	}
+
+	public SeatHoldDto(long id, String participant, String event, long expiresAt) {
+		this.id = id;
+		this.participant = participant;
+		this.event = event;
+		this.expiresAt = expiresAt;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public String getParticipant() {
+		return participant;
+	}
+
+	public void setParticipant(String participant) {
+		this.participant = participant;
+	}
+
+	public String getEvent() {
+		return event;
+	}
+
+	public void setEvent(String event) {
+		this.event = event;
+	}
+
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	public void setExpiresAt(long expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+
+}
@@ -0,0 +1,155 @@
+package ca.mcgill.ecse321.eventregistration.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+
+/**
+ * List of distinct elements backing the associations of
+ * {@link RegistrationManager}. Reads never lock, and {@link #add(Object)},
+ * {@link #contains(Object)} and {@link #remove(Object)} cost O(1) instead of a
+ * scan. Positional access walks the list, so prefer iterating it.
+ *
+ * Adding an element that is already in the list leaves the list unchanged and
+ * returns false.
+ */
+public class ConcurrentOrderedList<E> extends AbstractList<E> {
+
+	private final ConcurrentOrderedMap<E, E> elements = new ConcurrentOrderedMap<>();
+
+	@Override
+	public boolean add(E e) {
+		if (e == null)
+			throw new NullPointerException();
+		return elements.putIfAbsent(e, e) == null;
+	}
+
+	/**
+	 * Appends the element and moves the elements from the given position on
+	 * behind it.
+	 */
+	@Override
+	public void add(int index, E e) {
+		if (index < 0 || index > size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		List<E> tail = new ArrayList<>();
+		int i = 0;
+		for (E element : elements.values()) {
+			if (i++ >= index)
+				tail.add(element);
+		}
+		if (add(e)) {
+			for (E element : tail)
+				elements.moveToEnd(element);
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o != null && elements.get(o) != null;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return o != null && elements.remove(o, elements.get(o));
+	}
+
+	@Override
+	public E get(int index) {
+		if (index >= 0) {
+			int i = 0;
+			for (E element : elements.values()) {
+				if (i++ == index)
+					return element;
+			}
+		}
+		throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+	}
+
+	@Override
+	public E remove(int index) {
+		E element = get(index);
+		remove(element);
+		return element;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		if (o != null) {
+			int i = 0;
+			for (E element : elements.values()) {
+				if (element.equals(o))
+					return i;
+				i++;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int size() {
+		return elements.size();
+	}
+
+	@Override
+	public void clear() {
+		for (E element : elements.values())
+			remove(element);
+	}
+
+	/**
+	 * @return an unmodifiable view of the elements added after the one with the
+	 *         given sequence number, by sequence number; see
+	 *         {@link ConcurrentOrderedMap#after(long)}
+	 */
+	public NavigableMap<Long, E> after(long seq) {
+		return elements.after(seq);
+	}
+
+	/**
+	 * @return the sequence number of the element, or -1 if it is not in the list
+	 */
+	public long seqOf(Object o) {
+		return o == null ? -1 : elements.seqOf(o);
+	}
+
+	/**
+	 * @see ConcurrentOrderedMap#getEpoch()
+	 */
+	public long getEpoch() {
+		return elements.getEpoch();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		Iterator<E> values = elements.values().iterator();
+		return new Iterator<E>() {
+			private E last;
+
+			@Override
+			public boolean hasNext() {
+				return values.hasNext();
+			}
+
+			@Override
+			public E next() {
+				if (!values.hasNext())
+					throw new NoSuchElementException();
+				last = values.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null)
+					throw new IllegalStateException();
+				ConcurrentOrderedList.this.remove(last);
+				last = null;
+			}
+		};
+	}
+
+}
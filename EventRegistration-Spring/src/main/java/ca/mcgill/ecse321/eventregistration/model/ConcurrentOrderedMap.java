@@ -0,0 +1,134 @@
+package ca.mcgill.ecse321.eventregistration.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Map that remembers the order its entries were added in and that can be read
+ * and updated by many threads without locking. Keys are looked up in a hash
+ * map; the values are also kept in a skip list ordered by a sequence number
+ * taken when they are added. Iteration is weakly consistent and never throws
+ * {@link java.util.ConcurrentModificationException}. Null keys and values are
+ * not supported.
+ */
+public class ConcurrentOrderedMap<K, V> {
+
+	private static class Node<V> {
+		final long seq;
+		final V value;
+
+		Node(long seq, V value) {
+			this.seq = seq;
+			this.value = value;
+		}
+	}
+
+	private final ConcurrentHashMap<K, Node<V>> nodes = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<Long, V> ordered = new ConcurrentSkipListMap<>();
+	private final AtomicLong nextSeq = new AtomicLong();
+	private final AtomicInteger size = new AtomicInteger();
+	// tells the sequence numbers of this map from those of another one, e.g. one
+	// that held the same entries before they were loaded again
+	private final long epoch = ThreadLocalRandom.current().nextLong();
+
+	public V get(Object key) {
+		Node<V> node = nodes.get(key);
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * Iterators running at the same time may see the value even if another value
+	 * is mapped to the key already.
+	 * 
+	 * @return the value already mapped to the key, or null if the value was
+	 *         added
+	 */
+	public V putIfAbsent(K key, V value) {
+		// The value goes in the skip list before it can be found by key, so a
+		// remove that finds it also finds it in the skip list
+		Node<V> node = new Node<>(nextSeq.getAndIncrement(), value);
+		ordered.put(node.seq, value);
+		Node<V> existing = nodes.putIfAbsent(key, node);
+		if (existing != null) {
+			ordered.remove(node.seq);
+			return existing.value;
+		}
+		size.incrementAndGet();
+		return null;
+	}
+
+	public boolean remove(Object key, Object value) {
+		Node<V> node = nodes.get(key);
+		if (node == null || node.value != value || !nodes.remove(key, node))
+			return false;
+		ordered.remove(node.seq);
+		size.decrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Moves an entry behind all others. Iterators running at the same time may
+	 * see it twice, or see it once more after it was removed.
+	 */
+	public void moveToEnd(K key) {
+		Node<V> node = nodes.get(key);
+		if (node == null)
+			return;
+		Node<V> moved = new Node<>(nextSeq.getAndIncrement(), node.value);
+		ordered.put(moved.seq, moved.value);
+		if (nodes.replace(key, node, moved))
+			ordered.remove(node.seq);
+		else
+			ordered.remove(moved.seq);
+	}
+
+	/**
+	 * @return the sequence number of the entry with the key, or -1 if there is
+	 *         none
+	 */
+	public long seqOf(Object key) {
+		Node<V> node = nodes.get(key);
+		return node == null ? -1 : node.seq;
+	}
+
+	/**
+	 * @return a number that differs between maps, so that sequence numbers of
+	 *         this map can be told from those of others
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return an unmodifiable view of the values in insertion order
+	 */
+	public Collection<V> values() {
+		return Collections.unmodifiableCollection(ordered.values());
+	}
+
+	/**
+	 * @param seq
+	 *            sequence number of an entry, which need not be in the map any
+	 *            more, or -1 to start with the first entry
+	 * @return an unmodifiable view of the values added after the given entry, by
+	 *         sequence number, in insertion order
+	 */
+	public NavigableMap<Long, V> after(long seq) {
+		return Collections.unmodifiableNavigableMap(ordered.tailMap(seq, false));
+	}
+
+}
@@ -18,6 +18,7 @@ public class Event
   private Date eventDate;
   private Time startTime;
   private Time endTime;
+  private int capacity;
 
   //------------------------
   // CONSTRUCTOR
@@ -29,6 +30,7 @@ public class Event
     eventDate = aEventDate;
     startTime = aStartTime;
     endTime = aEndTime;
+    capacity = 0;
   }
 
   //------------------------
@@ -67,6 +69,14 @@ public class Event
     return wasSet;
   }
 
+  public boolean setCapacity(int aCapacity)
+  {
+    boolean wasSet = false;
+    capacity = aCapacity;
+    wasSet = true;
+    return wasSet;
+  }
+
   public String getName()
   {
     return name;
@@ -87,6 +97,11 @@ public class Event
     return endTime;
   }
 
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
   public void delete()
   {}
 
@@ -94,7 +109,8 @@ public class Event
   public String toString()
   {
     return super.toString() + "["+
-            "name" + ":" + getName()+ "]" + System.getProperties().getProperty("line.separator") +
+            "name" + ":" + getName()+ "," +
+            "capacity" + ":" + getCapacity()+ "]" + System.getProperties().getProperty("line.separator") +
             "  " + "eventDate" + "=" + (getEventDate() != null ? !getEventDate().equals(this)  ? getEventDate().toString().replaceAll("  ","    ") : "this" : "null") + System.getProperties().getProperty("line.separator") +
             "  " + "startTime" + "=" + (getStartTime() != null ? !getStartTime().equals(this)  ? getStartTime().toString().replaceAll("  ","    ") : "this" : "null") + System.getProperties().getProperty("line.separator") +
             "  " + "endTime" + "=" + (getEndTime() != null ? !getEndTime().equals(this)  ? getEndTime().toString().replaceAll("  ","    ") : "this" : "null");
@@ -0,0 +1,102 @@
+package ca.mcgill.ecse321.eventregistration.model;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Events ordered by date, then start time, then name, so that the events of a
+ * range of days are found in O(log n + k). Reads never lock. Events must not
+ * change their date, start time or name while they are in the calendar.
+ */
+class EventCalendar {
+
+	// Entries never use the minimum and maximum start, so a key with either of
+	// them is a bound that sorts before or after all events of its day
+	private static final long FIRST = Long.MIN_VALUE;
+	private static final long LAST = Long.MAX_VALUE;
+	private static final long NONE = Long.MIN_VALUE + 1;
+
+	private static final class Key implements Comparable<Key> {
+		final long date;
+		final long start;
+		final String name;
+
+		Key(long date, long start, String name) {
+			this.date = date;
+			this.start = start;
+			this.name = name;
+		}
+
+		Key(Event e) {
+			this(e.getEventDate() == null ? NONE : e.getEventDate().getTime(),
+					e.getStartTime() == null ? NONE : e.getStartTime().getTime(), e.getName() == null ? "" : e.getName());
+		}
+
+		@Override
+		public int compareTo(Key o) {
+			int c = Long.compare(date, o.date);
+			if (c == 0)
+				c = Long.compare(start, o.start);
+			if (c == 0)
+				c = name.compareTo(o.name);
+			return c;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && compareTo((Key) o) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(date) * 31 + name.hashCode();
+		}
+	}
+
+	private final ConcurrentSkipListMap<Key, Event> events = new ConcurrentSkipListMap<>();
+
+	void add(Event e) {
+		events.put(new Key(e), e);
+	}
+
+	void remove(Event e) {
+		events.remove(new Key(e), e);
+	}
+
+	/**
+	 * @param from
+	 *            first day, or null to start with the earliest event
+	 * @param to
+	 *            last day, or null to end with the latest event
+	 * @return the events on the days from {@code from} to {@code to}, both
+	 *         included, in order
+	 */
+	List<Event> between(Date from, Date to) {
+		return new ArrayList<Event>(between(from, to, null));
+	}
+
+	/**
+	 * @param after
+	 *            an event, which need not be in the calendar, or null
+	 * @return a view of the events on the days from {@code from} to {@code to}
+	 *         that come after the given event, in order; reading the first k of
+	 *         them takes O(log n + k)
+	 */
+	Collection<Event> between(Date from, Date to, Event after) {
+		Key lower = new Key(from == null ? FIRST : from.getTime(), FIRST, "");
+		Key upper = new Key(to == null ? LAST : to.getTime(), LAST, "");
+		boolean inclusive = true;
+		if (after != null && new Key(after).compareTo(lower) >= 0) {
+			lower = new Key(after);
+			inclusive = false;
+		}
+		if (lower.compareTo(upper) > 0)
+			return Collections.<Event>emptyList();
+		return Collections.unmodifiableCollection(events.subMap(lower, inclusive, upper, false).values());
+	}
+
+}
@@ -0,0 +1,76 @@
+package ca.mcgill.ecse321.eventregistration.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out registration ids without locking. Ids are used in blocks: before
+ * the first id of a block is handed out, the end of the block is recorded with
+ * the {@link Reservation}, so that after a restart the allocator can continue
+ * behind every id that may have been used without knowing which ones were.
+ * Only the thread that crosses into a new block waits for the reservation.
+ */
+public class IdAllocator {
+
+	/**
+	 * Durably records that ids below the limit may be in use.
+	 */
+	public interface Reservation {
+		boolean reserve(int limit);
+	}
+
+	public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+	private final AtomicInteger next = new AtomicInteger(1);
+	// ids below the limit are covered by the last reservation
+	private volatile int limit;
+	private volatile int blockSize = DEFAULT_BLOCK_SIZE;
+	private volatile Reservation reservation;
+
+	public int next() {
+		int id = next.getAndIncrement();
+		if (id >= limit)
+			reserve(id);
+		return id;
+	}
+
+	// A failed reservation is reported by the reservation itself; the ids stay
+	// unique while the application runs and ids of saved registrations are still
+	// skipped after a restart.
+	private synchronized void reserve(int id) {
+		if (id < limit)
+			return;
+		int newLimit = id + blockSize;
+		Reservation current = reservation;
+		if (current != null)
+			current.reserve(newLimit);
+		limit = newLimit;
+	}
+
+	/**
+	 * Makes sure that the given id is never handed out again, e.g. because a
+	 * registration with that id was loaded.
+	 */
+	public void advancePast(int id) {
+		next.accumulateAndGet(id + 1, Math::max);
+	}
+
+	/**
+	 * @return the id the next registration will get
+	 */
+	public int peek() {
+		return next.get();
+	}
+
+	/**
+	 * Records blocks of the given size with the reservation from now on. The
+	 * next id starts a new block.
+	 */
+	public synchronized void setReservation(Reservation reservation, int blockSize) {
+		if (blockSize < 1)
+			throw new IllegalArgumentException("The block size must be positive");
+		this.reservation = reservation;
+		this.blockSize = blockSize;
+		limit = next.get();
+	}
+
+}
@@ -0,0 +1,101 @@
+package ca.mcgill.ecse321.eventregistration.model;
+
+import java.util.List;
+
+/**
+ * Immutable state of a {@link RegistrationManager} after a given number of
+ * changes. The manager publishes a new view after every change; readers that
+ * need several lists that agree with each other, e.g. participants and their
+ * registrations, take them from the same view.
+ */
+public final class ModelView {
+
+	private final long version;
+	private final PublishedList<Registration> registrations;
+	private final PublishedList<Participant> participants;
+	private final PublishedList<Event> events;
+	// the versions at which each list last changed
+	private final long registrationsVersion;
+	private final long participantsVersion;
+	private final long eventsVersion;
+
+	ModelView(long version, PublishedList<Registration> registrations, PublishedList<Participant> participants,
+			PublishedList<Event> events) {
+		this(version, registrations, participants, events, version, version, version);
+	}
+
+	private ModelView(long version, PublishedList<Registration> registrations,
+			PublishedList<Participant> participants, PublishedList<Event> events, long registrationsVersion,
+			long participantsVersion, long eventsVersion) {
+		this.version = version;
+		this.registrations = registrations;
+		this.participants = participants;
+		this.events = events;
+		this.registrationsVersion = registrationsVersion;
+		this.participantsVersion = participantsVersion;
+		this.eventsVersion = eventsVersion;
+	}
+
+	ModelView withRegistrations(PublishedList<Registration> changed) {
+		return new ModelView(version + 1, changed, participants, events, version + 1, participantsVersion,
+				eventsVersion);
+	}
+
+	ModelView withParticipants(PublishedList<Participant> changed) {
+		return new ModelView(version + 1, registrations, changed, events, registrationsVersion, version + 1,
+				eventsVersion);
+	}
+
+	ModelView withEvents(PublishedList<Event> changed) {
+		return new ModelView(version + 1, registrations, participants, changed, registrationsVersion,
+				participantsVersion, version + 1);
+	}
+
+	/**
+	 * @return the number of changes made to the model before this view was
+	 *         published, it grows with every change
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public List<Registration> getRegistrations() {
+		return registrations;
+	}
+
+	public List<Participant> getParticipants() {
+		return participants;
+	}
+
+	public List<Event> getEvents() {
+		return events;
+	}
+
+	PublishedList<Registration> registrations() {
+		return registrations;
+	}
+
+	PublishedList<Participant> participants() {
+		return participants;
+	}
+
+	PublishedList<Event> events() {
+		return events;
+	}
+
+	/**
+	 * @return the version of the view in which the registrations last changed
+	 */
+	public long getRegistrationsVersion() {
+		return registrationsVersion;
+	}
+
+	public long getParticipantsVersion() {
+		return participantsVersion;
+	}
+
+	public long getEventsVersion() {
+		return eventsVersion;
+	}
+
+}
@@ -0,0 +1,244 @@
+package ca.mcgill.ecse321.eventregistration.model;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Immutable list that the model publishes in its views. The elements are kept
+ * in a persistent tree ordered by the sequence number each element gets when
+ * it is appended, and a second tree finds the sequence number of an element by
+ * its identity. Appending, removing an element and positional access cost
+ * O(log n): a change copies the nodes on the path to the changed one and
+ * shares all others with the list it was made from, so a writer that has to
+ * redo its change only repeats that path. The lists can be read by any thread
+ * once they are published through a volatile field.
+ */
+final class PublishedList<E> extends AbstractList<E> implements RandomAccess {
+
+	// Node of a treap ordered by (major, minor). Its priority is a hash of the
+	// key, so the shape of a tree only depends on its keys and is balanced in
+	// expectation. Nodes never change once they are built.
+	private static final class Node {
+		final long major;
+		final long minor;
+		final Object value;
+		final Node left;
+		final Node right;
+		final int size;
+		final long priority;
+
+		Node(long major, long minor, Object value, Node left, Node right, long priority) {
+			this.major = major;
+			this.minor = minor;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.size = size(left) + 1 + size(right);
+			this.priority = priority;
+		}
+
+		Node(long major, long minor, Object value) {
+			this(major, minor, value, null, null, mix(major * 0x9E3779B97F4A7C15L + minor));
+		}
+
+		Node with(Node left, Node right) {
+			return new Node(major, minor, value, left, right, priority);
+		}
+
+		int compareTo(long major, long minor) {
+			int c = Long.compare(this.major, major);
+			return c != 0 ? c : Long.compare(this.minor, minor);
+		}
+	}
+
+	private static final PublishedList<Object> EMPTY = new PublishedList<>(null, null, 0);
+
+	// the elements by sequence number, and the sequence numbers by identity
+	// hash code and sequence number, with the element as value
+	private final Node elements;
+	private final Node index;
+	private final long nextSeq;
+
+	private PublishedList(Node elements, Node index, long nextSeq) {
+		this.elements = elements;
+		this.index = index;
+		this.nextSeq = nextSeq;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <E> PublishedList<E> empty() {
+		return (PublishedList<E>) EMPTY;
+	}
+
+	static <E> PublishedList<E> of(Collection<? extends E> elements) {
+		PublishedList<E> list = empty();
+		for (E e : elements)
+			list = list.append(e);
+		return list;
+	}
+
+	/**
+	 * @return this list with the element added at the end
+	 */
+	PublishedList<E> append(E e) {
+		long seq = nextSeq;
+		return new PublishedList<>(insert(elements, new Node(seq, 0, e)),
+				insert(index, new Node(System.identityHashCode(e), seq, e)), seq + 1);
+	}
+
+	/**
+	 * @return this list without the elements in the given set, or this list if
+	 *         it contains none of them; costs O(log n) for each element of the
+	 *         set
+	 */
+	PublishedList<E> removeAll(Set<?> removed) {
+		Node changedElements = elements;
+		Node changedIndex = index;
+		for (Object r : removed) {
+			Node found = find(changedIndex, System.identityHashCode(r), r);
+			if (found == null)
+				continue;
+			changedElements = delete(changedElements, found.minor, 0);
+			changedIndex = delete(changedIndex, found.major, found.minor);
+		}
+		return changedElements == elements ? this : new PublishedList<>(changedElements, changedIndex, nextSeq);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E get(int index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		Node node = elements;
+		while (true) {
+			int left = size(node.left);
+			if (index < left) {
+				node = node.left;
+			} else if (index > left) {
+				index -= left + 1;
+				node = node.right;
+			} else {
+				return (E) node.value;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size(elements);
+	}
+
+	// Walks the tree in order, in O(n) for the whole list instead of O(log n)
+	// for each element
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private final Deque<Node> path = new ArrayDeque<>();
+			private Node next = elements;
+
+			@Override
+			public boolean hasNext() {
+				return next != null || !path.isEmpty();
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public E next() {
+				for (; next != null; next = next.left)
+					path.push(next);
+				if (path.isEmpty())
+					throw new NoSuchElementException();
+				Node node = path.pop();
+				next = node.right;
+				return (E) node.value;
+			}
+		};
+	}
+
+	// The height of the tree of the elements, which bounds the cost of a change
+	int height() {
+		return height(elements);
+	}
+
+	private static int height(Node node) {
+		return node == null ? 0 : 1 + Math.max(height(node.left), height(node.right));
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static Node insert(Node root, Node leaf) {
+		if (root == null)
+			return leaf;
+		if (leaf.priority > root.priority) {
+			Node[] parts = split(root, leaf.major, leaf.minor);
+			return leaf.with(parts[0], parts[1]);
+		}
+		if (root.compareTo(leaf.major, leaf.minor) > 0)
+			return root.with(insert(root.left, leaf), root.right);
+		return root.with(root.left, insert(root.right, leaf));
+	}
+
+	// Splits the tree into the nodes before and after the key, which is not in it
+	private static Node[] split(Node root, long major, long minor) {
+		if (root == null)
+			return new Node[2];
+		if (root.compareTo(major, minor) > 0) {
+			Node[] parts = split(root.left, major, minor);
+			parts[1] = root.with(parts[1], root.right);
+			return parts;
+		}
+		Node[] parts = split(root.right, major, minor);
+		parts[0] = root.with(root.left, parts[0]);
+		return parts;
+	}
+
+	private static Node delete(Node root, long major, long minor) {
+		if (root == null)
+			return null;
+		int c = root.compareTo(major, minor);
+		if (c > 0)
+			return root.with(delete(root.left, major, minor), root.right);
+		if (c < 0)
+			return root.with(root.left, delete(root.right, major, minor));
+		return merge(root.left, root.right);
+	}
+
+	// Joins two trees whose keys are all smaller in the first one
+	private static Node merge(Node left, Node right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		if (left.priority > right.priority)
+			return left.with(left.left, merge(left.right, right));
+		return right.with(merge(left, right.left), right.right);
+	}
+
+	// Finds the node of the value among those with the given major key, which
+	// are few unless identity hash codes collide
+	private static Node find(Node root, long major, Object value) {
+		while (root != null && root.major != major)
+			root = root.major > major ? root.left : root.right;
+		if (root == null)
+			return null;
+		if (root.value == value)
+			return root;
+		Node found = find(root.left, major, value);
+		return found != null ? found : find(root.right, major, value);
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return z ^ (z >>> 33);
+	}
+
+}
@@ -3,7 +3,7 @@
 
 package ca.mcgill.ecse321.eventregistration.model;
 
-// line 16 "../../../../../EventRegisteration.ump"
+// line 18 "../../../../../EventRegisteration.ump"
 public class Registration
 {
 
@@ -11,7 +11,7 @@ public class Registration
   // STATIC VARIABLES
   //------------------------
 
-  private static int nextId = 1;
+  private static final IdAllocator ids = new IdAllocator();
 
   //------------------------
   // MEMBER VARIABLES
@@ -30,7 +30,13 @@ public class Registration
 
   public Registration(Participant aParticipant, Event aEvent)
   {
-    id = nextId++;
+    this(ids.next(), aParticipant, aEvent);
+  }
+
+  public Registration(int aId, Participant aParticipant, Event aEvent)
+  {
+    id = aId;
+    ids.advancePast(aId);
     if (!setParticipant(aParticipant))
     {
       throw new RuntimeException("Unable to create Registration due to aParticipant");
@@ -96,4 +102,10 @@ public class Registration
             "  " + "participant = "+(getParticipant()!=null?Integer.toHexString(System.identityHashCode(getParticipant())):"null") + System.getProperties().getProperty("line.separator") +
             "  " + "event = "+(getEvent()!=null?Integer.toHexString(System.identityHashCode(getEvent())):"null");
   }
+
+  // line 27 "../../../../../EventRegisteration.ump"
+  public static IdAllocator getIdAllocator(){
+    return ids;
+  }
+
 }
\ No newline at end of file
@@ -3,10 +3,16 @@
 
 package ca.mcgill.ecse321.eventregistration.model;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
 import java.sql.Date;
 import java.sql.Time;
 
-// line 23 "../../../../../EventRegisteration.ump"
+// line 33 "../../../../../EventRegisteration.ump"
 public class RegistrationManager
 {
 
@@ -19,15 +25,33 @@ public class RegistrationManager
   private List<Participant> participants;
   private List<Event> events;
 
+  //Helper Variables
+  private transient ConcurrentMap<String, Participant> participantsByName;
+  private transient ConcurrentMap<String, Event> eventsByName;
+  private transient ConcurrentSkipListMap<String, Participant> participantsInNameOrder;
+  private transient ConcurrentSkipListMap<String, Event> eventsInNameOrder;
+  private transient ConcurrentMap<String, ConcurrentOrderedMap<String, Registration>> registrationsByParticipant;
+  private transient ConcurrentMap<String, ConcurrentOrderedMap<String, Registration>> registrationsByEvent;
+  private transient EventCalendar eventCalendar;
+  private transient ConcurrentMap<String, Schedule> schedules;
+  private transient ConcurrentMap<String, Seats> seats;
+  private static final Object[] registrationLocks = newLocks(64);
+  private transient AtomicReference<ModelView> view;
+  private transient ConcurrentMap<String, Long> participantVersions;
+  private transient ConcurrentMap<String, Long> eventVersions;
+
   //------------------------
   // CONSTRUCTOR
   //------------------------
 
   public RegistrationManager()
   {
-    registrations = new ArrayList<Registration>();
-    participants = new ArrayList<Participant>();
-    events = new ArrayList<Event>();
+    registrations = new ConcurrentOrderedList<Registration>();
+    participants = new ConcurrentOrderedList<Participant>();
+    events = new ConcurrentOrderedList<Event>();
+    // line 578 "../../../../../EventRegisteration.ump"
+    index();
+    // END OF UMPLE AFTER INJECTION
   }
 
   //------------------------
@@ -133,8 +157,9 @@ public class RegistrationManager
   public boolean addRegistration(Registration aRegistration)
   {
     boolean wasAdded = false;
-    if (registrations.contains(aRegistration)) { return false; }
-    registrations.add(aRegistration);
+    if (aRegistration == null) { return false; }
+    if (!acquireSeat(aRegistration)) { return false; }
+    if (!addHeldRegistration(aRegistration)) { releaseSeat(aRegistration); return false; }
     wasAdded = true;
     return wasAdded;
   }
@@ -142,10 +167,14 @@ public class RegistrationManager
   public boolean removeRegistration(Registration aRegistration)
   {
     boolean wasRemoved = false;
-    if (registrations.contains(aRegistration))
+    if (aRegistration == null) { return false; }
+    synchronized (registrationLock(aRegistration))
     {
-      registrations.remove(aRegistration);
-      wasRemoved = true;
+      if (detach(aRegistration))
+      {
+        publishRemoved(aRegistration);
+        wasRemoved = true;
+      }
     }
     return wasRemoved;
   }
@@ -161,6 +190,9 @@ public class RegistrationManager
       registrations.add(index, aRegistration);
       wasAdded = true;
     }
+    // line 592 "../../../../../EventRegisteration.ump"
+    if (wasAdded) { republish(); }
+    // END OF UMPLE AFTER INJECTION
     return wasAdded;
   }
 
@@ -179,6 +211,9 @@ public class RegistrationManager
     {
       wasAdded = addRegistrationAt(aRegistration, index);
     }
+    // line 593 "../../../../../EventRegisteration.ump"
+    if (wasAdded) { republish(); }
+    // END OF UMPLE AFTER INJECTION
     return wasAdded;
   }
 
@@ -190,20 +225,33 @@ public class RegistrationManager
   public boolean addParticipant(Participant aParticipant)
   {
     boolean wasAdded = false;
-    if (participants.contains(aParticipant)) { return false; }
-    participants.add(aParticipant);
+    // line 579 "../../../../../EventRegisteration.ump"
+    if (aParticipant == null || !reserveName(aParticipant)) { return false; }
+    // END OF UMPLE BEFORE INJECTION
+    if (!participants.add(aParticipant)) { releaseName(aParticipant); return false; }
     wasAdded = true;
+    // line 586 "../../../../../EventRegisteration.ump"
+    if (wasAdded) { publish(current -> current.withParticipants(current.participants().append(aParticipant)), version -> touch(participantVersions, aParticipant.getName(), version)); }
+    // END OF UMPLE AFTER INJECTION
     return wasAdded;
   }
 
   public boolean removeParticipant(Participant aParticipant)
   {
     boolean wasRemoved = false;
-    if (participants.contains(aParticipant))
+    if (participants.remove(aParticipant))
     {
-      participants.remove(aParticipant);
       wasRemoved = true;
     }
+    // line 580 "../../../../../EventRegisteration.ump"
+    if (wasRemoved) { releaseName(aParticipant); }
+    // END OF UMPLE AFTER INJECTION
+    // line 587 "../../../../../EventRegisteration.ump"
+    if (wasRemoved) { publish(current -> current.withParticipants(current.participants().removeAll(Collections.singleton(aParticipant))), version -> forget(participantVersions, aParticipant.getName())); }
+    // END OF UMPLE AFTER INJECTION
+    // line 590 "../../../../../EventRegisteration.ump"
+    if (wasRemoved) { removeRegistrationsOf(aParticipant); }
+    // END OF UMPLE AFTER INJECTION
     return wasRemoved;
   }
 
@@ -218,6 +266,9 @@ public class RegistrationManager
       participants.add(index, aParticipant);
       wasAdded = true;
     }
+    // line 594 "../../../../../EventRegisteration.ump"
+    if (wasAdded) { republish(); }
+    // END OF UMPLE AFTER INJECTION
     return wasAdded;
   }
 
@@ -236,6 +287,9 @@ public class RegistrationManager
     {
       wasAdded = addParticipantAt(aParticipant, index);
     }
+    // line 595 "../../../../../EventRegisteration.ump"
+    if (wasAdded) { republish(); }
+    // END OF UMPLE AFTER INJECTION
     return wasAdded;
   }
 
@@ -247,20 +301,39 @@ public class RegistrationManager
   public boolean addEvent(Event aEvent)
   {
     boolean wasAdded = false;
-    if (events.contains(aEvent)) { return false; }
-    events.add(aEvent);
+    // line 581 "../../../../../EventRegisteration.ump"
+    if (aEvent == null || !reserveName(aEvent)) { return false; }
+    // END OF UMPLE BEFORE INJECTION
+    if (!events.add(aEvent)) { releaseName(aEvent); return false; }
     wasAdded = true;
+    // line 583 "../../../../../EventRegisteration.ump"
+    if (wasAdded) { eventCalendar.add(aEvent); }
+    // END OF UMPLE AFTER INJECTION
+    // line 588 "../../../../../EventRegisteration.ump"
+    if (wasAdded) { publish(current -> current.withEvents(current.events().append(aEvent)), version -> touch(eventVersions, aEvent.getName(), version)); }
+    // END OF UMPLE AFTER INJECTION
     return wasAdded;
   }
 
   public boolean removeEvent(Event aEvent)
   {
     boolean wasRemoved = false;
-    if (events.contains(aEvent))
+    if (events.remove(aEvent))
     {
-      events.remove(aEvent);
       wasRemoved = true;
     }
+    // line 582 "../../../../../EventRegisteration.ump"
+    if (wasRemoved) { releaseName(aEvent); }
+    // END OF UMPLE AFTER INJECTION
+    // line 584 "../../../../../EventRegisteration.ump"
+    if (wasRemoved) { eventCalendar.remove(aEvent); }
+    // END OF UMPLE AFTER INJECTION
+    // line 589 "../../../../../EventRegisteration.ump"
+    if (wasRemoved) { publish(current -> current.withEvents(current.events().removeAll(Collections.singleton(aEvent))), version -> forget(eventVersions, aEvent.getName())); }
+    // END OF UMPLE AFTER INJECTION
+    // line 591 "../../../../../EventRegisteration.ump"
+    if (wasRemoved) { removeRegistrationsOf(aEvent); }
+    // END OF UMPLE AFTER INJECTION
     return wasRemoved;
   }
 
@@ -275,6 +348,9 @@ public class RegistrationManager
       events.add(index, aEvent);
       wasAdded = true;
     }
+    // line 596 "../../../../../EventRegisteration.ump"
+    if (wasAdded) { republish(); }
+    // END OF UMPLE AFTER INJECTION
     return wasAdded;
   }
 
@@ -293,6 +369,9 @@ public class RegistrationManager
     {
       wasAdded = addEventAt(aEvent, index);
     }
+    // line 597 "../../../../../EventRegisteration.ump"
+    if (wasAdded) { republish(); }
+    // END OF UMPLE AFTER INJECTION
     return wasAdded;
   }
 
@@ -301,6 +380,454 @@ public class RegistrationManager
     registrations.clear();
     participants.clear();
     events.clear();
+    // line 585 "../../../../../EventRegisteration.ump"
+    index();
+    // END OF UMPLE AFTER INJECTION
+  }
+
+
+  // line 41 "../../../../../EventRegisteration.ump"
+  public static RegistrationManager copyOf(ModelView aView){
+    RegistrationManager copy = new RegistrationManager();
+    copy.registrations.addAll(aView.getRegistrations());
+    copy.participants.addAll(aView.getParticipants());
+    copy.events.addAll(aView.getEvents());
+    copy.index();
+    return copy;
+  }
+
+  // line 78 "../../../../../EventRegisteration.ump"
+  public Participant getParticipant(String name){
+    return name == null ? null : participantsByName.get(name);
+  }
+
+  // line 83 "../../../../../EventRegisteration.ump"
+  public Event getEvent(String name){
+    return name == null ? null : eventsByName.get(name);
+  }
+
+  // line 88 "../../../../../EventRegisteration.ump"
+  public Collection<Registration> getRegistrationsOfParticipant(String participantName){
+    ConcurrentOrderedMap<String, Registration> adjacent = participantName == null ? null : registrationsByParticipant.get(participantName);
+    return adjacent == null ? Collections.<Registration>emptyList() : adjacent.values();
+  }
+
+  // line 94 "../../../../../EventRegisteration.ump"
+  public Collection<Registration> getRegistrationsOfEvent(String eventName){
+    ConcurrentOrderedMap<String, Registration> adjacent = eventName == null ? null : registrationsByEvent.get(eventName);
+    return adjacent == null ? Collections.<Registration>emptyList() : adjacent.values();
+  }
+
+  // line 100 "../../../../../EventRegisteration.ump"
+  public Registration getRegistration(String participantName, String eventName){
+    ConcurrentOrderedMap<String, Registration> adjacent = participantName == null ? null : registrationsByParticipant.get(participantName);
+    return adjacent == null || eventName == null ? null : adjacent.get(eventName);
+  }
+
+  // line 108 "../../../../../EventRegisteration.ump"
+  public List<Event> getEventsBetween(Date from, Date to){
+    return eventCalendar.between(from, to);
+  }
+
+  // line 115 "../../../../../EventRegisteration.ump"
+  public Collection<Event> getEventsBetween(Date from, Date to, Event after){
+    return eventCalendar.between(from, to, after);
+  }
+
+  // line 122 "../../../../../EventRegisteration.ump"
+  public NavigableMap<Long, Participant> getParticipantsAddedAfter(long seq){
+    return ((ConcurrentOrderedList<Participant>) participants).after(seq);
+  }
+
+  // line 127 "../../../../../EventRegisteration.ump"
+  public NavigableMap<Long, Event> getEventsAddedAfter(long seq){
+    return ((ConcurrentOrderedList<Event>) events).after(seq);
+  }
+
+  // line 134 "../../../../../EventRegisteration.ump"
+  public long getParticipantsEpoch(){
+    return ((ConcurrentOrderedList<Participant>) participants).getEpoch();
+  }
+
+  // line 139 "../../../../../EventRegisteration.ump"
+  public long getEventsEpoch(){
+    return ((ConcurrentOrderedList<Event>) events).getEpoch();
+  }
+
+  // line 146 "../../../../../EventRegisteration.ump"
+  public long getParticipantSeq(String name){
+    Participant aParticipant = getParticipant(name);
+    return aParticipant == null ? -1 : ((ConcurrentOrderedList<Participant>) participants).seqOf(aParticipant);
+  }
+
+  // line 152 "../../../../../EventRegisteration.ump"
+  public long getEventSeq(String name){
+    Event aEvent = getEvent(name);
+    return aEvent == null ? -1 : ((ConcurrentOrderedList<Event>) events).seqOf(aEvent);
+  }
+
+  // line 159 "../../../../../EventRegisteration.ump"
+  public NavigableMap<String, Participant> getParticipantsNamedAfter(String name){
+    return Collections.unmodifiableNavigableMap(name == null ? participantsInNameOrder : participantsInNameOrder.tailMap(name, false));
+  }
+
+  // line 164 "../../../../../EventRegisteration.ump"
+  public NavigableMap<String, Event> getEventsNamedAfter(String name){
+    return Collections.unmodifiableNavigableMap(name == null ? eventsInNameOrder : eventsInNameOrder.tailMap(name, false));
+  }
+
+  // line 171 "../../../../../EventRegisteration.ump"
+  public Event getOverlappingEvent(String participantName, Event aEvent){
+    Schedule schedule = participantName == null ? null : schedules.get(participantName);
+    return schedule == null ? null : schedule.findOverlap(aEvent);
+  }
+
+  // line 178 "../../../../../EventRegisteration.ump"
+  public List<Event> getConflictingEvents(String participantName){
+    Schedule schedule = participantName == null ? null : schedules.get(participantName);
+    return schedule == null ? new ArrayList<Event>() : schedule.conflicts();
+  }
+
+  // line 187 "../../../../../EventRegisteration.ump"
+  public int getSeatsTaken(String eventName){
+    Seats eventSeats = eventName == null ? null : seats.get(eventName);
+    return eventSeats == null ? 0 : eventSeats.taken();
+  }
+
+  // line 195 "../../../../../EventRegisteration.ump"
+  public boolean holdSeat(Event aEvent){
+    if (aEvent.getName() == null) { return false; }
+    Event added = eventsByName.get(aEvent.getName());
+    return seatsOf(aEvent.getName()).tryAcquire((added == null ? aEvent : added).getCapacity());
+  }
+
+  // line 202 "../../../../../EventRegisteration.ump"
+  public void releaseHeldSeat(Event aEvent){
+    if (aEvent.getName() != null) { seatsOf(aEvent.getName()).release(); }
+  }
+
+  // line 209 "../../../../../EventRegisteration.ump"
+  public boolean addHeldRegistration(Registration aRegistration){
+    if (aRegistration == null) { return false; }
+    synchronized (registrationLock(aRegistration))
+    {
+      if (getRegistration(aRegistration.getParticipant().getName(), aRegistration.getEvent().getName()) != null) { return false; }
+      if (!registrations.add(aRegistration)) { return false; }
+      link(aRegistration);
+      publish(current -> current.withRegistrations(current.registrations().append(aRegistration)), version -> touch(aRegistration, version));
+    }
+    return true;
+  }
+
+  // line 224 "../../../../../EventRegisteration.ump"
+  public boolean addToWaitlist(Participant aParticipant, Event aEvent){
+    if (aParticipant.getName() == null || aEvent.getName() == null) { return false; }
+    return seatsOf(aEvent.getName()).join(aParticipant);
+  }
+
+  // line 230 "../../../../../EventRegisteration.ump"
+  public boolean removeFromWaitlist(String participantName, String eventName){
+    Seats eventSeats = participantName == null || eventName == null ? null : seats.get(eventName);
+    return eventSeats != null && eventSeats.leave(participantName);
+  }
+
+  // line 236 "../../../../../EventRegisteration.ump"
+  public boolean isWaitlisted(String participantName, String eventName){
+    Seats eventSeats = participantName == null || eventName == null ? null : seats.get(eventName);
+    return eventSeats != null && eventSeats.isWaiting(participantName);
+  }
+
+  // line 242 "../../../../../EventRegisteration.ump"
+  public boolean hasWaitlist(String eventName){
+    Seats eventSeats = eventName == null ? null : seats.get(eventName);
+    return eventSeats != null && eventSeats.hasWaitlist();
+  }
+
+  // line 249 "../../../../../EventRegisteration.ump"
+  public Participant getFirstWaitlisted(String eventName){
+    Seats eventSeats = eventName == null ? null : seats.get(eventName);
+    return eventSeats == null ? null : eventSeats.first();
+  }
+
+  // line 255 "../../../../../EventRegisteration.ump"
+  public List<Participant> getWaitlist(String eventName){
+    List<Participant> waitlist = new ArrayList<Participant>();
+    Seats eventSeats = eventName == null ? null : seats.get(eventName);
+    if (eventSeats != null)
+    {
+      // participants removed while they were waiting are dropped when they are
+      // first in line
+      for (Participant p : eventSeats.waitlist())
+        if (participantsByName.containsKey(p.getName())) { waitlist.add(p); }
+    }
+    return waitlist;
+  }
+
+  // line 269 "../../../../../EventRegisteration.ump"
+  private Seats seatsOf(String eventName){
+    return seats.computeIfAbsent(eventName, name -> new Seats());
+  }
+
+  // line 274 "../../../../../EventRegisteration.ump"
+  private boolean acquireSeat(Registration r){
+    return r.getEvent().getName() == null || holdSeat(r.getEvent());
+  }
+
+  // line 279 "../../../../../EventRegisteration.ump"
+  private void releaseSeat(Registration r){
+    releaseHeldSeat(r.getEvent());
+  }
+
+  // line 285 "../../../../../EventRegisteration.ump"
+  private void countSeat(Registration r){
+    if (r.getEvent().getName() != null) { seatsOf(r.getEvent().getName()).tryAcquire(0); }
+  }
+
+  // line 291 "../../../../../EventRegisteration.ump"
+  private static Object[] newLocks(int count){
+    Object[] locks = new Object[count];
+    for (int i = 0; i < count; i++)
+      locks[i] = new Object();
+    return locks;
+  }
+
+  // line 299 "../../../../../EventRegisteration.ump"
+  private static Object registrationLock(Registration aRegistration){
+    String eventName = aRegistration.getEvent().getName();
+    int hash = eventName == null ? 0 : eventName.hashCode();
+    return registrationLocks[(hash ^ (hash >>> 16)) & (registrationLocks.length - 1)];
+  }
+
+  // line 306 "../../../../../EventRegisteration.ump"
+  private void index(){
+    if (view == null) { view = new AtomicReference<ModelView>(new ModelView(0, PublishedList.<Registration>empty(), PublishedList.<Participant>empty(), PublishedList.<Event>empty())); }
+    participantsByName = new ConcurrentHashMap<String, Participant>();
+    eventsByName = new ConcurrentHashMap<String, Event>();
+    participantsInNameOrder = new ConcurrentSkipListMap<String, Participant>();
+    eventsInNameOrder = new ConcurrentSkipListMap<String, Event>();
+    registrationsByParticipant = new ConcurrentHashMap<String, ConcurrentOrderedMap<String, Registration>>();
+    registrationsByEvent = new ConcurrentHashMap<String, ConcurrentOrderedMap<String, Registration>>();
+    eventCalendar = new EventCalendar();
+    schedules = new ConcurrentHashMap<String, Schedule>();
+    seats = new ConcurrentHashMap<String, Seats>();
+    participantVersions = new ConcurrentHashMap<String, Long>();
+    eventVersions = new ConcurrentHashMap<String, Long>();
+    for (Participant p : participants)
+      indexParticipant(p);
+    for (Event e : events)
+      indexEvent(e);
+    for (Registration r : registrations)
+    {
+      link(r);
+      countSeat(r);
+    }
+    republish();
+  }
+
+  // line 332 "../../../../../EventRegisteration.ump"
+  private Object readResolve(){
+    index();
+    return this;
+  }
+
+  // line 338 "../../../../../EventRegisteration.ump"
+  private void indexParticipant(Participant aParticipant){
+    reserveName(aParticipant);
+    touch(participantVersions, aParticipant.getName());
+  }
+
+  // line 344 "../../../../../EventRegisteration.ump"
+  private void indexEvent(Event aEvent){
+    reserveName(aEvent);
+    eventCalendar.add(aEvent);
+    touch(eventVersions, aEvent.getName());
+  }
+
+  // line 351 "../../../../../EventRegisteration.ump"
+  private void link(Registration r){
+    String participantName = r.getParticipant().getName();
+    String eventName = r.getEvent().getName();
+    if (participantName == null || eventName == null) { return; }
+    registrationsByParticipant.computeIfAbsent(participantName, name -> new ConcurrentOrderedMap<String, Registration>()).putIfAbsent(eventName, r);
+    registrationsByEvent.computeIfAbsent(eventName, name -> new ConcurrentOrderedMap<String, Registration>()).putIfAbsent(participantName, r);
+    schedules.computeIfAbsent(participantName, name -> new Schedule()).add(r.getEvent());
+  }
+
+  // line 361 "../../../../../EventRegisteration.ump"
+  private void unlink(Registration r){
+    String participantName = r.getParticipant().getName();
+    String eventName = r.getEvent().getName();
+    if (participantName == null || eventName == null) { return; }
+    ConcurrentOrderedMap<String, Registration> adjacent = registrationsByParticipant.get(participantName);
+    if (adjacent != null) { adjacent.remove(eventName, r); }
+    adjacent = registrationsByEvent.get(eventName);
+    if (adjacent != null) { adjacent.remove(participantName, r); }
+    Schedule schedule = schedules.get(participantName);
+    if (schedule != null) { schedule.remove(r.getEvent()); }
+  }
+
+  // line 376 "../../../../../EventRegisteration.ump"
+  private void removeRegistrationsOf(Participant aParticipant){
+    if (aParticipant.getName() == null) { return; }
+    ConcurrentOrderedMap<String, Registration> adjacent = registrationsByParticipant.get(aParticipant.getName());
+    if (adjacent == null) { return; }
+    removeAll(adjacent);
+    registrationsByParticipant.remove(aParticipant.getName(), adjacent);
+    schedules.remove(aParticipant.getName());
+  }
+
+  // line 388 "../../../../../EventRegisteration.ump"
+  private void removeRegistrationsOf(Event aEvent){
+    if (aEvent.getName() == null) { return; }
+    ConcurrentOrderedMap<String, Registration> adjacent = registrationsByEvent.get(aEvent.getName());
+    if (adjacent != null)
+    {
+      removeAll(adjacent);
+      registrationsByEvent.remove(aEvent.getName(), adjacent);
+    }
+    seats.remove(aEvent.getName());
+  }
+
+  // line 400 "../../../../../EventRegisteration.ump"
+  private void removeAll(ConcurrentOrderedMap<String, Registration> adjacent){
+    Set<Registration> removed = Collections.newSetFromMap(new IdentityHashMap<Registration, Boolean>());
+    while (!adjacent.isEmpty())
+    {
+      for (Registration r : adjacent.values())
+        if (detach(r)) { removed.add(r); } else { unlink(r); }
+    }
+    if (removed.isEmpty()) { return; }
+    publish(current -> current.withRegistrations(current.registrations().removeAll(removed)), version -> {
+      for (Registration r : removed)
+        touch(r, version);
+    });
+  }
+
+  // line 417 "../../../../../EventRegisteration.ump"
+  private boolean detach(Registration aRegistration){
+    synchronized (registrationLock(aRegistration))
+    {
+      if (!registrations.remove(aRegistration)) { return false; }
+      unlink(aRegistration);
+      releaseSeat(aRegistration);
+      return true;
+    }
+  }
+
+  // line 430 "../../../../../EventRegisteration.ump"
+  private boolean reserveName(Participant aParticipant){
+    if (aParticipant.getName() == null) { return true; }
+    if (participantsByName.putIfAbsent(aParticipant.getName(), aParticipant) != null) { return false; }
+    participantsInNameOrder.put(aParticipant.getName(), aParticipant);
+    return true;
+  }
+
+  // line 438 "../../../../../EventRegisteration.ump"
+  private boolean reserveName(Event aEvent){
+    if (aEvent.getName() == null) { return true; }
+    if (eventsByName.putIfAbsent(aEvent.getName(), aEvent) != null) { return false; }
+    eventsInNameOrder.put(aEvent.getName(), aEvent);
+    return true;
+  }
+
+  // line 446 "../../../../../EventRegisteration.ump"
+  private void releaseName(Participant aParticipant){
+    if (aParticipant.getName() != null && participantsByName.remove(aParticipant.getName(), aParticipant)) { participantsInNameOrder.remove(aParticipant.getName(), aParticipant); }
+  }
+
+  // line 451 "../../../../../EventRegisteration.ump"
+  private void releaseName(Event aEvent){
+    if (aEvent.getName() != null && eventsByName.remove(aEvent.getName(), aEvent)) { eventsInNameOrder.remove(aEvent.getName(), aEvent); }
+  }
+
+  // line 467 "../../../../../EventRegisteration.ump"
+  public ModelView getView(){
+    return view.get();
+  }
+
+  // line 472 "../../../../../EventRegisteration.ump"
+  public long getVersion(){
+    return view.get().getVersion();
+  }
+
+  // line 486 "../../../../../EventRegisteration.ump"
+  public long getParticipantsVersion(){
+    return view.get().getParticipantsVersion();
+  }
+
+  // line 491 "../../../../../EventRegisteration.ump"
+  public long getEventsVersion(){
+    return view.get().getEventsVersion();
+  }
+
+  // line 496 "../../../../../EventRegisteration.ump"
+  public long getRegistrationsVersion(){
+    return view.get().getRegistrationsVersion();
+  }
+
+  // line 502 "../../../../../EventRegisteration.ump"
+  public long getParticipantVersion(String name){
+    Long participantVersion = name == null ? null : participantVersions.get(name);
+    return participantVersion == null ? -1 : participantVersion;
+  }
+
+  // line 508 "../../../../../EventRegisteration.ump"
+  public long getEventVersion(String name){
+    Long eventVersion = name == null ? null : eventVersions.get(name);
+    return eventVersion == null ? -1 : eventVersion;
+  }
+
+  // line 515 "../../../../../EventRegisteration.ump"
+  public long getWaitlistVersion(String eventName){
+    Seats eventSeats = eventName == null ? null : seats.get(eventName);
+    return eventSeats == null ? 0 : eventSeats.waitlistVersion();
+  }
+
+  // line 522 "../../../../../EventRegisteration.ump"
+  private void touch(ConcurrentMap<String, Long> versions, String name){
+    touch(versions, name, getVersion());
+  }
+
+  // line 529 "../../../../../EventRegisteration.ump"
+  private void touch(ConcurrentMap<String, Long> versions, String name, long version){
+    if (name != null) { versions.merge(name, version, Math::max); }
+  }
+
+  // line 535 "../../../../../EventRegisteration.ump"
+  private void touch(Registration r, long version){
+    String name = r.getParticipant().getName();
+    if (name != null) { participantVersions.computeIfPresent(name, (key, participantVersion) -> Math.max(participantVersion, version)); }
+  }
+
+  // line 541 "../../../../../EventRegisteration.ump"
+  private void forget(ConcurrentMap<String, Long> versions, String name){
+    if (name != null) { versions.remove(name); }
+  }
+
+  // line 547 "../../../../../EventRegisteration.ump"
+  private void republish(){
+    publish(current -> new ModelView(current.getVersion() + 1, PublishedList.of(registrations), PublishedList.of(participants), PublishedList.of(events)));
+  }
+
+  // line 552 "../../../../../EventRegisteration.ump"
+  private void publish(UnaryOperator<ModelView> change){
+    publish(change, version -> {});
+  }
+
+  // line 562 "../../../../../EventRegisteration.ump"
+  private void publish(UnaryOperator<ModelView> change, LongConsumer changed){
+    while (true)
+    {
+      ModelView current = view.get();
+      ModelView next = change.apply(current);
+      changed.accept(next.getVersion());
+      if (view.compareAndSet(current, next)) { return; }
+    }
+  }
+
+  // line 573 "../../../../../EventRegisteration.ump"
+  private void publishRemoved(Registration aRegistration){
+    publish(current -> current.withRegistrations(current.registrations().removeAll(Collections.singleton(aRegistration))), version -> touch(aRegistration, version));
   }
 
 }
\ No newline at end of file
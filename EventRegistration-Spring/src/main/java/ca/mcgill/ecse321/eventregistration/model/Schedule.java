@@ -0,0 +1,231 @@
+package ca.mcgill.ecse321.eventregistration.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The events of one participant as an interval tree: an AVL tree ordered by
+ * start in which every node also knows the latest end in its subtree. Finding
+ * an event that overlaps a given time takes O(log d) for d events. Events that
+ * lack a date or a time have no interval and are not kept.
+ *
+ * Intervals are half-open, so an event that starts when another one ends does
+ * not overlap it.
+ */
+class Schedule {
+
+	private static final class Node {
+		final Event event;
+		final long start;
+		final long end;
+		long maxEnd;
+		int height = 1;
+		Node left;
+		Node right;
+
+		Node(Event event, long start, long end) {
+			this.event = event;
+			this.start = start;
+			this.end = end;
+			this.maxEnd = end;
+		}
+	}
+
+	private Node root;
+	private int size;
+
+	/**
+	 * @return the start of the event in milliseconds since the epoch day 0, or
+	 *         null if it has no date or start time
+	 */
+	static Long start(Event e) {
+		if (e.getEventDate() == null || e.getStartTime() == null)
+			return null;
+		return e.getEventDate().toLocalDate().toEpochDay() * 86400000L
+				+ e.getStartTime().toLocalTime().toNanoOfDay() / 1000000L;
+	}
+
+	static Long end(Event e) {
+		if (e.getEventDate() == null || e.getEndTime() == null)
+			return null;
+		return e.getEventDate().toLocalDate().toEpochDay() * 86400000L
+				+ e.getEndTime().toLocalTime().toNanoOfDay() / 1000000L;
+	}
+
+	synchronized void add(Event e) {
+		Long start = start(e);
+		Long end = end(e);
+		if (start == null || end == null)
+			return;
+		root = insert(root, new Node(e, start, end));
+	}
+
+	synchronized void remove(Event e) {
+		Long start = start(e);
+		Long end = end(e);
+		if (start == null || end == null)
+			return;
+		root = delete(root, e, start, end);
+	}
+
+	/**
+	 * @return an event whose time overlaps the given event, or null
+	 */
+	synchronized Event findOverlap(Event e) {
+		Long start = start(e);
+		Long end = end(e);
+		if (start == null || end == null)
+			return null;
+		// If the left subtree ends after the start but none of its events overlap,
+		// the one ending last starts at or after the end, and so do all events to
+		// the right
+		Node node = root;
+		while (node != null) {
+			if (node.start < end && start < node.end)
+				return node.event;
+			node = node.left != null && node.left.maxEnd > start ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the events that overlap at least one other event, in start order
+	 */
+	synchronized List<Event> conflicts() {
+		// Sweeping the events in start order, an event that overlaps an earlier one
+		// also overlaps the earlier event that ends last
+		Set<Event> conflicts = new LinkedHashSet<>();
+		List<Node> nodes = new ArrayList<>(size);
+		inOrder(root, nodes);
+		Node latest = null;
+		for (Node node : nodes) {
+			if (latest != null && node.start < latest.end) {
+				conflicts.add(latest.event);
+				conflicts.add(node.event);
+			}
+			if (latest == null || node.end > latest.end)
+				latest = node;
+		}
+		List<Event> sorted = new ArrayList<>(conflicts.size());
+		for (Node node : nodes) {
+			if (conflicts.contains(node.event))
+				sorted.add(node.event);
+		}
+		return sorted;
+	}
+
+	private static void inOrder(Node node, List<Node> nodes) {
+		if (node == null)
+			return;
+		inOrder(node.left, nodes);
+		nodes.add(node);
+		inOrder(node.right, nodes);
+	}
+
+	private static int compare(long start, long end, Event e, Node node) {
+		int c = Long.compare(start, node.start);
+		if (c == 0)
+			c = Long.compare(end, node.end);
+		if (c == 0)
+			c = name(e).compareTo(name(node.event));
+		return c;
+	}
+
+	private Node insert(Node node, Node added) {
+		if (node == null) {
+			size++;
+			return added;
+		}
+		if (node.event == added.event)
+			return node;
+		if (compare(added.start, added.end, added.event, node) < 0)
+			node.left = insert(node.left, added);
+		else
+			node.right = insert(node.right, added);
+		return balance(node);
+	}
+
+	private Node delete(Node node, Event e, long start, long end) {
+		if (node == null)
+			return null;
+		if (node.event == e) {
+			size--;
+			if (node.left == null)
+				return node.right;
+			if (node.right == null)
+				return node.left;
+			Node successor = node.right;
+			while (successor.left != null)
+				successor = successor.left;
+			successor.right = deleteMin(node.right);
+			successor.left = node.left;
+			return balance(successor);
+		}
+		if (compare(start, end, e, node) < 0)
+			node.left = delete(node.left, e, start, end);
+		else
+			node.right = delete(node.right, e, start, end);
+		return balance(node);
+	}
+
+	private static Node deleteMin(Node node) {
+		if (node.left == null)
+			return node.right;
+		node.left = deleteMin(node.left);
+		return balance(node);
+	}
+
+	private static String name(Event e) {
+		return e.getName() == null ? "" : e.getName();
+	}
+
+	private static int height(Node node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private static void update(Node node) {
+		node.height = Math.max(height(node.left), height(node.right)) + 1;
+		node.maxEnd = node.end;
+		if (node.left != null && node.left.maxEnd > node.maxEnd)
+			node.maxEnd = node.left.maxEnd;
+		if (node.right != null && node.right.maxEnd > node.maxEnd)
+			node.maxEnd = node.right.maxEnd;
+	}
+
+	private static Node balance(Node node) {
+		update(node);
+		int skew = height(node.left) - height(node.right);
+		if (skew > 1) {
+			if (height(node.left.left) < height(node.left.right))
+				node.left = rotateLeft(node.left);
+			return rotateRight(node);
+		}
+		if (skew < -1) {
+			if (height(node.right.right) < height(node.right.left))
+				node.right = rotateRight(node.right);
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+	private static Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		update(node);
+		update(left);
+		return left;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		update(node);
+		update(right);
+		return right;
+	}
+
+}
@@ -0,0 +1,77 @@
+package ca.mcgill.ecse321.eventregistration.model;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seat counter and waitlist of one event. Seats are taken with a
+ * compare-and-set on the counter, so exactly as many registrations as the event
+ * has seats succeed however many threads try at once. The waitlist keeps
+ * participants in the order they joined it, at most once each.
+ */
+class Seats {
+
+	private final AtomicInteger taken = new AtomicInteger();
+	private final ConcurrentOrderedMap<String, Participant> waitlist = new ConcurrentOrderedMap<>();
+	// incremented after every change of the waitlist
+	private final AtomicLong waitlistVersion = new AtomicLong();
+
+	/**
+	 * @param capacity
+	 *            number of seats, 0 or less for no limit
+	 */
+	boolean tryAcquire(int capacity) {
+		while (true) {
+			int current = taken.get();
+			if (capacity > 0 && current >= capacity)
+				return false;
+			if (taken.compareAndSet(current, current + 1))
+				return true;
+		}
+	}
+
+	void release() {
+		taken.decrementAndGet();
+	}
+
+	int taken() {
+		return taken.get();
+	}
+
+	boolean join(Participant p) {
+		if (waitlist.putIfAbsent(p.getName(), p) != null)
+			return false;
+		waitlistVersion.incrementAndGet();
+		return true;
+	}
+
+	boolean leave(String participantName) {
+		if (!waitlist.remove(participantName, waitlist.get(participantName)))
+			return false;
+		waitlistVersion.incrementAndGet();
+		return true;
+	}
+
+	long waitlistVersion() {
+		return waitlistVersion.get();
+	}
+
+	boolean isWaiting(String participantName) {
+		return waitlist.get(participantName) != null;
+	}
+
+	Participant first() {
+		Iterator<Participant> waiting = waitlist.values().iterator();
+		return waiting.hasNext() ? waiting.next() : null;
+	}
+
+	Iterable<Participant> waitlist() {
+		return waitlist.values();
+	}
+
+	boolean hasWaitlist() {
+		return !waitlist.isEmpty();
+	}
+
+}
@@ -0,0 +1,206 @@
+package ca.mcgill.ecse321.eventregistration.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+import ca.mcgill.ecse321.eventregistration.model.Registration;
+import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
+
+/**
+ * Compact binary snapshot of a {@link RegistrationManager}.
+ *
+ * <pre>
+ * magic         int    'ERSB'
+ * version       short
+ * strings       int count, then count modified-UTF-8 strings
+ * participants  int count, int listed, then count x [int name]
+ * events        int count, int listed, then count x [int name, long date, long start, long end, int capacity]
+ * registrations int count, then count x [int id, int participant, int event]
+ * </pre>
+ *
+ * Names are indexes into the string table and registrations refer to
+ * participants and events by their index in the respective table. Entities
+ * that are only reachable through a registration are stored after the
+ * {@code listed} ones. Dates and times are stored as epoch milliseconds,
+ * {@link Long#MIN_VALUE} stands for {@code null}. Version 1 snapshots have no
+ * event capacity.
+ */
+class BinarySnapshot {
+
+	static final int MAGIC = 0x45525342;
+	static final short VERSION = 2;
+
+	private static final long NULL_TIME = Long.MIN_VALUE;
+
+	/**
+	 * @return whether the file starts with the binary snapshot magic number
+	 */
+	static boolean isBinarySnapshot(File file) {
+		if (file.length() < 4)
+			return false;
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+			return in.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the snapshot to a temporary file first and moves it into place, so a
+	 * crash never leaves a half written snapshot behind. Callers write one
+	 * snapshot at a time.
+	 */
+	static void write(RegistrationManager rm, File file) throws IOException {
+		List<Participant> participants = new ArrayList<>(rm.getParticipants());
+		List<Event> events = new ArrayList<>(rm.getEvents());
+		List<Registration> registrations = new ArrayList<>(rm.getRegistrations());
+		int listedParticipants = participants.size();
+		int listedEvents = events.size();
+
+		Map<Participant, Integer> participantIndex = new IdentityHashMap<>();
+		for (Participant p : participants)
+			participantIndex.putIfAbsent(p, participantIndex.size());
+		Map<Event, Integer> eventIndex = new IdentityHashMap<>();
+		for (Event e : events)
+			eventIndex.putIfAbsent(e, eventIndex.size());
+		for (Registration r : registrations) {
+			if (participantIndex.putIfAbsent(r.getParticipant(), participantIndex.size()) == null)
+				participants.add(r.getParticipant());
+			if (eventIndex.putIfAbsent(r.getEvent(), eventIndex.size()) == null)
+				events.add(r.getEvent());
+		}
+
+		StringTable strings = new StringTable();
+		for (Participant p : participants)
+			strings.add(p.getName());
+		for (Event e : events)
+			strings.add(e.getName());
+
+		Path target = file.toPath().toAbsolutePath();
+		Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+
+			out.writeInt(strings.values.size());
+			for (String s : strings.values)
+				out.writeUTF(s);
+
+			out.writeInt(participants.size());
+			out.writeInt(listedParticipants);
+			for (Participant p : participants)
+				out.writeInt(strings.indexOf(p.getName()));
+
+			out.writeInt(events.size());
+			out.writeInt(listedEvents);
+			for (Event e : events) {
+				out.writeInt(strings.indexOf(e.getName()));
+				out.writeLong(e.getEventDate() == null ? NULL_TIME : e.getEventDate().getTime());
+				out.writeLong(e.getStartTime() == null ? NULL_TIME : e.getStartTime().getTime());
+				out.writeLong(e.getEndTime() == null ? NULL_TIME : e.getEndTime().getTime());
+				out.writeInt(e.getCapacity());
+			}
+
+			out.writeInt(registrations.size());
+			for (Registration r : registrations) {
+				out.writeInt(r.getId());
+				out.writeInt(participantIndex.get(r.getParticipant()));
+				out.writeInt(eventIndex.get(r.getEvent()));
+			}
+		}
+		Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads the snapshot through a buffered stream, the same way it was written.
+	 * Every name is needed while the entities are created, since the manager
+	 * indexes them by name, so the string table is read in full up front.
+	 */
+	static RegistrationManager read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(file.toPath()), 65536))) {
+			if (file.length() < 6 || in.readInt() != MAGIC)
+				throw new IOException(file + " is not a binary snapshot");
+			short version = in.readShort();
+			if (version != 1 && version != VERSION)
+				throw new IOException("Unsupported snapshot version " + version + " in " + file);
+
+			String[] strings = new String[in.readInt()];
+			for (int i = 0; i < strings.length; i++)
+				strings[i] = in.readUTF();
+
+			RegistrationManager rm = new RegistrationManager();
+			Participant[] participants = new Participant[in.readInt()];
+			int listedParticipants = in.readInt();
+			for (int i = 0; i < participants.length; i++) {
+				participants[i] = new Participant(string(strings, in.readInt()));
+				if (i < listedParticipants)
+					rm.addParticipant(participants[i]);
+			}
+
+			Event[] events = new Event[in.readInt()];
+			int listedEvents = in.readInt();
+			for (int i = 0; i < events.length; i++) {
+				String name = string(strings, in.readInt());
+				long date = in.readLong();
+				long startTime = in.readLong();
+				long endTime = in.readLong();
+				events[i] = new Event(name, date == NULL_TIME ? null : new Date(date),
+						startTime == NULL_TIME ? null : new Time(startTime),
+						endTime == NULL_TIME ? null : new Time(endTime));
+				if (version > 1)
+					events[i].setCapacity(in.readInt());
+				if (i < listedEvents)
+					rm.addEvent(events[i]);
+			}
+
+			int registrations = in.readInt();
+			for (int i = 0; i < registrations; i++) {
+				int id = in.readInt();
+				rm.addRegistration(new Registration(id, participants[in.readInt()], events[in.readInt()]));
+			}
+			return rm;
+		} catch (EOFException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+			throw new IOException("Truncated or corrupt snapshot " + file, e);
+		}
+	}
+
+	// -1 stands for a null name
+	private static String string(String[] strings, int index) {
+		return index < 0 ? null : strings[index];
+	}
+
+	private static class StringTable {
+		private final List<String> values = new ArrayList<>();
+		private final Map<String, Integer> indexes = new HashMap<>();
+
+		void add(String s) {
+			if (s != null && !indexes.containsKey(s)) {
+				indexes.put(s, values.size());
+				values.add(s);
+			}
+		}
+
+		int indexOf(String s) {
+			return s == null ? -1 : indexes.get(s);
+		}
+	}
+
+}
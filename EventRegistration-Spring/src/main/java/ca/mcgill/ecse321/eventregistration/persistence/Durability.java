@@ -0,0 +1,22 @@
+package ca.mcgill.ecse321.eventregistration.persistence;
+
+/**
+ * How long a mutation waits for its write-ahead log record to reach the disk.
+ */
+public enum Durability {
+	/**
+	 * Every record is written and fsynced by the calling thread before it
+	 * returns.
+	 */
+	SYNC,
+	/**
+	 * Records of concurrent callers are queued and written with a single write
+	 * and fsync; every caller waits until its group is on disk.
+	 */
+	GROUP,
+	/**
+	 * Records are queued and flushed in the background; callers do not wait, so
+	 * the last records may be lost on a crash.
+	 */
+	ASYNC
+}
@@ -0,0 +1,343 @@
+package ca.mcgill.ecse321.eventregistration.persistence;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+import ca.mcgill.ecse321.eventregistration.model.Registration;
+import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
+
+/**
+ * Repository storing one row per entity in an embedded database, by default an
+ * in-process H2 database file. Unlike the XStream backend, saving an entity
+ * costs the same no matter how large the model is.
+ */
+public class JdbcRegistrationRepository implements RegistrationRepository {
+
+	// Dates and times are kept as epoch milliseconds so that they load exactly as
+	// they were saved, like in the other backends. The seq columns preserve the
+	// insertion order the model lists are in.
+	private static final String[] SCHEMA = {
+			"CREATE TABLE IF NOT EXISTS participant (seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+					+ "name VARCHAR(255) NOT NULL, CONSTRAINT participant_name UNIQUE (name))",
+			"CREATE TABLE IF NOT EXISTS event (seq BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL, "
+					+ "event_date BIGINT, start_time BIGINT, end_time BIGINT, CONSTRAINT event_name UNIQUE (name))",
+			"CREATE TABLE IF NOT EXISTS registration (seq BIGINT AUTO_INCREMENT PRIMARY KEY, id INT NOT NULL, "
+					+ "participant VARCHAR(255) NOT NULL REFERENCES participant (name) ON DELETE CASCADE, "
+					+ "event VARCHAR(255) NOT NULL REFERENCES event (name) ON DELETE CASCADE, "
+					+ "CONSTRAINT registration_pair UNIQUE (participant, event))",
+			// the unique constraint indexes registrations by participant, this one by event
+			"CREATE INDEX IF NOT EXISTS registration_event ON registration (event)",
+			// databases created before events had a capacity lack the column
+			"ALTER TABLE event ADD COLUMN IF NOT EXISTS capacity INT DEFAULT 0 NOT NULL",
+			// single row holding the limit of the last reserved block of registration ids
+			"CREATE TABLE IF NOT EXISTS registration_ids (id INT PRIMARY KEY, reserved INT NOT NULL)" };
+
+	private static final String INSERT_PARTICIPANT = "MERGE INTO participant (name) KEY (name) VALUES (?)";
+	private static final String INSERT_EVENT = "MERGE INTO event (name, event_date, start_time, end_time, capacity) "
+			+ "KEY (name) VALUES (?, ?, ?, ?, ?)";
+	private static final String INSERT_REGISTRATION = "MERGE INTO registration (id, participant, event) "
+			+ "KEY (participant, event) VALUES (?, ?, ?)";
+	private static final String DELETE_REGISTRATION = "DELETE FROM registration WHERE participant = ? AND event = ?";
+	// the foreign keys delete the registrations, through the indexes on both columns
+	private static final String DELETE_PARTICIPANT = "DELETE FROM participant WHERE name = ?";
+	private static final String DELETE_EVENT = "DELETE FROM event WHERE name = ?";
+	private static final String RESERVE_IDS = "MERGE INTO registration_ids (id, reserved) KEY (id) VALUES (1, ?)";
+
+	private static final int BATCH_SIZE = 1000;
+
+	private final Connection connection;
+	private String importFilename;
+
+	/**
+	 * @param url
+	 *            JDBC url of the database, e.g. {@code jdbc:h2:file:./data}
+	 */
+	public JdbcRegistrationRepository(String url) throws SQLException {
+		connection = DriverManager.getConnection(url);
+		try (Statement statement = connection.createStatement()) {
+			for (String ddl : SCHEMA) {
+				statement.execute(ddl);
+			}
+		}
+	}
+
+	/**
+	 * Imports the given snapshot file (e.g. an existing data.xml) the first time
+	 * the model is loaded from an empty database.
+	 */
+	public void setImportFilename(String importFilename) {
+		this.importFilename = importFilename;
+	}
+
+	@Override
+	public synchronized RegistrationManager load() {
+		RegistrationManager rm = new RegistrationManager();
+		try (Statement statement = connection.createStatement()) {
+			Map<String, Participant> participants = new HashMap<>();
+			try (ResultSet rs = statement.executeQuery("SELECT name FROM participant ORDER BY seq")) {
+				while (rs.next()) {
+					Participant p = new Participant(rs.getString(1));
+					participants.put(p.getName(), p);
+					rm.addParticipant(p);
+				}
+			}
+			Map<String, Event> events = new HashMap<>();
+			try (ResultSet rs = statement
+					.executeQuery("SELECT name, event_date, start_time, end_time, capacity FROM event ORDER BY seq")) {
+				while (rs.next()) {
+					Event e = new Event(rs.getString(1), new Date(rs.getLong(2)), new Time(rs.getLong(3)),
+							new Time(rs.getLong(4)));
+					e.setCapacity(rs.getInt(5));
+					events.put(e.getName(), e);
+					rm.addEvent(e);
+				}
+			}
+			try (ResultSet rs = statement.executeQuery("SELECT id, participant, event FROM registration ORDER BY seq")) {
+				while (rs.next()) {
+					rm.addRegistration(new Registration(rs.getInt(1), participants.get(rs.getString(2)),
+							events.get(rs.getString(3))));
+				}
+			}
+			try (ResultSet rs = statement.executeQuery("SELECT reserved FROM registration_ids")) {
+				if (rs.next())
+					Registration.getIdAllocator().advancePast(rs.getInt(1) - 1);
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		if (!rm.hasParticipants() && !rm.hasEvents() && importFilename != null && new File(importFilename).exists()) {
+			RegistrationManager imported = PersistenceXStream.initializeModelManager(importFilename);
+			if (imported != null && saveAll(imported))
+				return imported;
+		}
+		return rm;
+	}
+
+	@Override
+	public synchronized boolean saveParticipant(RegistrationManager rm, Participant p) {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_PARTICIPANT)) {
+			bindParticipant(statement, p);
+			statement.executeUpdate();
+			return true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized boolean saveEvent(RegistrationManager rm, Event e) {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_EVENT)) {
+			bindEvent(statement, e);
+			statement.executeUpdate();
+			return true;
+		} catch (SQLException ex) {
+			ex.printStackTrace();
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized boolean saveRegistration(RegistrationManager rm, Registration r) {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_REGISTRATION)) {
+			bindRegistration(statement, r);
+			statement.executeUpdate();
+			return true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized boolean deleteRegistration(RegistrationManager rm, Registration r) {
+		try (PreparedStatement statement = connection.prepareStatement(DELETE_REGISTRATION)) {
+			statement.setString(1, r.getParticipant().getName());
+			statement.setString(2, r.getEvent().getName());
+			statement.executeUpdate();
+			return true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized boolean deleteParticipant(RegistrationManager rm, Participant p) {
+		try (PreparedStatement statement = connection.prepareStatement(DELETE_PARTICIPANT)) {
+			statement.setString(1, p.getName());
+			statement.executeUpdate();
+			return true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized boolean deleteEvent(RegistrationManager rm, Event e) {
+		try (PreparedStatement statement = connection.prepareStatement(DELETE_EVENT)) {
+			statement.setString(1, e.getName());
+			statement.executeUpdate();
+			return true;
+		} catch (SQLException ex) {
+			ex.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Inserts the whole model with batched statements in a single transaction.
+	 */
+	@Override
+	public synchronized boolean saveAll(RegistrationManager rm) {
+		try {
+			connection.setAutoCommit(false);
+			try (PreparedStatement participants = connection.prepareStatement(INSERT_PARTICIPANT);
+					PreparedStatement events = connection.prepareStatement(INSERT_EVENT);
+					PreparedStatement registrations = connection.prepareStatement(INSERT_REGISTRATION)) {
+				int batched = 0;
+				for (Participant p : rm.getParticipants()) {
+					bindParticipant(participants, p);
+					participants.addBatch();
+					if (++batched % BATCH_SIZE == 0)
+						participants.executeBatch();
+				}
+				participants.executeBatch();
+				batched = 0;
+				for (Event e : rm.getEvents()) {
+					bindEvent(events, e);
+					events.addBatch();
+					if (++batched % BATCH_SIZE == 0)
+						events.executeBatch();
+				}
+				events.executeBatch();
+				batched = 0;
+				for (Registration r : rm.getRegistrations()) {
+					bindRegistration(registrations, r);
+					registrations.addBatch();
+					if (++batched % BATCH_SIZE == 0)
+						registrations.executeBatch();
+				}
+				registrations.executeBatch();
+				connection.commit();
+				return true;
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized boolean reserveIds(int limit) {
+		try (PreparedStatement statement = connection.prepareStatement(RESERVE_IDS)) {
+			statement.setInt(1, limit);
+			statement.executeUpdate();
+			return true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * The saves until {@link #commitBatch()} run in one transaction.
+	 */
+	@Override
+	public synchronized void beginBatch() {
+		try {
+			connection.setAutoCommit(false);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Commits the transaction, or rolls it back if the commit fails, so that no
+	 * part of the batch is left for the next transaction to commit.
+	 */
+	@Override
+	public synchronized boolean commitBatch() {
+		try {
+			connection.commit();
+			return true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			rollback();
+			return false;
+		} finally {
+			restoreAutoCommit();
+		}
+	}
+
+	@Override
+	public synchronized void rollbackBatch() {
+		try {
+			rollback();
+		} finally {
+			restoreAutoCommit();
+		}
+	}
+
+	private void rollback() {
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void restoreAutoCommit() {
+		try {
+			connection.setAutoCommit(true);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public synchronized void close() {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void bindParticipant(PreparedStatement statement, Participant p) throws SQLException {
+		statement.setString(1, p.getName());
+	}
+
+	private static void bindEvent(PreparedStatement statement, Event e) throws SQLException {
+		statement.setString(1, e.getName());
+		statement.setLong(2, e.getEventDate().getTime());
+		statement.setLong(3, e.getStartTime().getTime());
+		statement.setLong(4, e.getEndTime().getTime());
+		statement.setInt(5, e.getCapacity());
+	}
+
+	private static void bindRegistration(PreparedStatement statement, Registration r) throws SQLException {
+		statement.setInt(1, r.getId());
+		statement.setString(2, r.getParticipant().getName());
+		statement.setString(3, r.getEvent().getName());
+	}
+
+}
@@ -0,0 +1,26 @@
+package ca.mcgill.ecse321.eventregistration.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the state of the background snapshotter on the actuator metrics
+ * endpoint.
+ */
+@Component
+public class PersistenceMetrics implements PublicMetrics {
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<>();
+		// logged mutations that a restart would have to replay
+		metrics.add(new Metric<Integer>("persistence.snapshot.lag", PersistenceXStream.getSnapshotLag()));
+		metrics.add(new Metric<Long>("persistence.snapshot.age", PersistenceXStream.getSnapshotAge()));
+		return metrics;
+	}
+
+}
@@ -1,15 +1,37 @@
 package ca.mcgill.ecse321.eventregistration.persistence;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.springframework.stereotype.Repository;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.collections.CollectionConverter;
 
+import ca.mcgill.ecse321.eventregistration.model.ConcurrentOrderedList;
 import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.IdAllocator;
+import ca.mcgill.ecse321.eventregistration.model.ModelView;
 import ca.mcgill.ecse321.eventregistration.model.Participant;
 import ca.mcgill.ecse321.eventregistration.model.Registration;
 import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
@@ -21,6 +43,33 @@ public class PersistenceXStream {
 
 	private static XStream xstream = new XStream();
 	private static String filename = "data.xml";
+	private static SnapshotFormat snapshotFormat = SnapshotFormat.XML;
+
+	// write-ahead log mode: mutations are appended to <filename>.log and folded
+	// into the snapshot by a background snapshotter once the log grows too long
+	private static boolean writeAheadLogEnabled = false;
+	private static int compactionThreshold = 1000;
+	private static Durability durability = Durability.GROUP;
+	private static long groupCommitDelayMillis = 0;
+	private static volatile WriteAheadLog writeAheadLog;
+	private static volatile RegistrationManager manager;
+	private static ExecutorService snapshotter;
+	private static final AtomicBoolean compactionPending = new AtomicBoolean();
+	private static volatile long lastSnapshotMillis = System.currentTimeMillis();
+
+	// Snapshots are serialized and moved into place one at a time, so the one
+	// moved last was also taken last and an older snapshot never replaces a newer
+	// one
+	private static final Object snapshotLock = new Object();
+
+	// saves of the current thread between beginBatch and commitBatch
+	private static final ThreadLocal<Batch> batch = new ThreadLocal<>();
+
+	private static class Batch {
+		// the model to write a snapshot of, when there is no log
+		RegistrationManager rm;
+		final List<CompletableFuture<Void>> appended = new ArrayList<>();
+	}
 
 	// TODO create the RegistrationManager instance here (replace the void return
 	// value as well)
@@ -28,15 +77,12 @@ public class PersistenceXStream {
 		// Initialization for persistence
 		RegistrationManager rm;
 		setFilename(fileName);
-		setAlias("event", Event.class);
-		setAlias("participant", Participant.class);
-		setAlias("registration", Registration.class);
-		setAlias("manager", RegistrationManager.class);
+		setAliases();
 
 		// load model if exists, create otherwise
 		File file = new File(fileName);
 		if (file.exists()) {
-			rm = (RegistrationManager) loadFromXMLwithXStream();
+			rm = loadSnapshot();
 		} else {
 			try {
 				file.createNewFile();
@@ -45,37 +91,441 @@ public class PersistenceXStream {
 				System.exit(1);
 			}
 			rm = new RegistrationManager();
-			saveToXMLwithXStream(rm);
+			saveSnapshot(rm);
+		}
+		manager = rm;
+		lastSnapshotMillis = System.currentTimeMillis();
+		restoreIds(rm);
+		if (writeAheadLogEnabled) {
+			openWriteAheadLog(rm);
 		}
 		return rm;
 	}
 
-	public static boolean saveToXMLwithXStream(Object obj) {
-		xstream.setMode(XStream.ID_REFERENCES);
-		String xml = xstream.toXML(obj); // save our xml file
+	/**
+	 * Switches to write-ahead log mode. Must be called before
+	 * {@link #initializeModelManager(String)}.
+	 * 
+	 * @param threshold
+	 *            number of log records after which the log is compacted into a
+	 *            new snapshot
+	 */
+	public static void enableWriteAheadLog(int threshold) {
+		writeAheadLogEnabled = true;
+		compactionThreshold = threshold;
+	}
+
+	public static void disableWriteAheadLog() {
+		writeAheadLogEnabled = false;
+		closeWriteAheadLog();
+	}
+
+	/**
+	 * Selects how long mutations wait for their log record to reach the disk.
+	 * Must be called before {@link #initializeModelManager(String)}.
+	 * 
+	 * @param maxDelayMillis
+	 *            how long a group of records may wait for further records before
+	 *            it is written; ignored in {@link Durability#SYNC} mode
+	 */
+	public static void setDurability(Durability mode, long maxDelayMillis) {
+		durability = mode;
+		groupCommitDelayMillis = maxDelayMillis;
+	}
+
+	public static Durability getDurability() {
+		return durability;
+	}
+
+	public static boolean isWriteAheadLogEnabled() {
+		return writeAheadLogEnabled;
+	}
+
+	public static String getLogFilename() {
+		return filename + ".log";
+	}
+
+	public static String getIdsFilename() {
+		return filename + ".ids";
+	}
+
+	/**
+	 * Records the registration id limit in the ids file next to the snapshot. The
+	 * file is replaced atomically and forced to disk before the ids are used.
+	 */
+	public static boolean reserveIds(int limit) {
+		Path target = new File(getIdsFilename()).toPath().toAbsolutePath();
+		Path tmp = target.resolveSibling(target.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.allocate(4).putInt(0, limit);
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+				channel.force(true);
+			}
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	// New registrations are numbered behind the loaded ones and behind the last
+	// reserved block, whose ids may have been used by registrations that were
+	// never saved
+	private static void restoreIds(RegistrationManager rm) {
+		IdAllocator ids = Registration.getIdAllocator();
+		if (rm != null) {
+			for (Registration r : rm.getRegistrations())
+				ids.advancePast(r.getId());
+		}
+		File idsFile = new File(getIdsFilename());
+		if (idsFile.length() >= 4) {
+			try (DataInputStream in = new DataInputStream(Files.newInputStream(idsFile.toPath()))) {
+				ids.advancePast(in.readInt() - 1);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
 
+	// Replay the log tail on top of the snapshot that was just loaded
+	private static void openWriteAheadLog(RegistrationManager rm) {
+		closeWriteAheadLog();
 		try {
-			FileWriter writer = new FileWriter(filename);
-			writer.write(xml);
-			writer.close();
+			writeAheadLog = new WriteAheadLog(new File(getLogFilename()), durability, groupCommitDelayMillis);
+			writeAheadLog.replay(rm);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		if (snapshotter == null) {
+			snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "persistence-snapshotter");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		// a previous segment is left over if the last snapshot did not complete
+		if (writeAheadLog.hasPreviousSegment())
+			compact();
+		compactIfNeeded(writeAheadLog);
+	}
+
+	private static void closeWriteAheadLog() {
+		if (writeAheadLog != null) {
+			try {
+				writeAheadLog.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			writeAheadLog = null;
+		}
+	}
+
+	/**
+	 * Persists a newly created participant: appended to the log in write-ahead log
+	 * mode, otherwise the whole model is saved.
+	 */
+	public static boolean persistParticipant(RegistrationManager rm, Participant p) {
+		return persist(rm, log -> log.appendParticipant(p));
+	}
+
+	public static boolean persistEvent(RegistrationManager rm, Event e) {
+		return persist(rm, log -> log.appendEvent(e));
+	}
+
+	public static boolean persistRegistration(RegistrationManager rm, Registration r) {
+		return persist(rm, log -> log.appendRegistration(r));
+	}
+
+	/**
+	 * Persists the removal of a registration the same way.
+	 */
+	public static boolean persistRegistrationRemoval(RegistrationManager rm, Registration r) {
+		return persist(rm, log -> log.appendRegistrationRemoval(r));
+	}
+
+	/**
+	 * Persists the removal of a participant, and with it of their registrations,
+	 * the same way.
+	 */
+	public static boolean persistParticipantRemoval(RegistrationManager rm, Participant p) {
+		return persist(rm, log -> log.appendParticipantRemoval(p));
+	}
+
+	/**
+	 * Persists the removal of an event and its registrations the same way.
+	 */
+	public static boolean persistEventRemoval(RegistrationManager rm, Event e) {
+		return persist(rm, log -> log.appendEventRemoval(e));
+	}
+
+	private interface LogRecord {
+		CompletableFuture<Void> appendTo(WriteAheadLog log) throws IOException;
+	}
+
+	private static boolean persist(RegistrationManager rm, LogRecord record) {
+		Batch pending = batch.get();
+		WriteAheadLog log = writeAheadLog;
+		if (log == null) {
+			if (pending == null)
+				return saveSnapshot(rm);
+			pending.rm = rm;
+			return true;
+		}
+		CompletableFuture<Void> durable;
+		try {
+			durable = record.appendTo(log);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		compactIfNeeded(log);
+		if (pending != null) {
+			pending.appended.add(durable);
+			return true;
+		}
+		return log.getDurability() == Durability.ASYNC || await(durable);
+	}
+
+	private static boolean await(CompletableFuture<Void> durable) {
+		try {
+			durable.get();
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Defers the saves of the calling thread until {@link #commitBatch()}:
+	 * without a log the snapshot is written once for the whole batch, with a log
+	 * the records are appended right away but only waited for at the end.
+	 */
+	public static void beginBatch() {
+		batch.set(new Batch());
+	}
+
+	public static boolean commitBatch() {
+		Batch pending = batch.get();
+		batch.remove();
+		if (pending == null)
 			return true;
+		if (pending.rm != null)
+			return saveSnapshot(pending.rm);
+		WriteAheadLog log = writeAheadLog;
+		if (pending.appended.isEmpty() || (log != null && log.getDurability() == Durability.ASYNC))
+			return true;
+		return await(CompletableFuture.allOf(pending.appended.toArray(new CompletableFuture<?>[0])));
+	}
+
+	/**
+	 * Ends the batch of the calling thread without writing its snapshot. Records
+	 * that were already appended to the log stay there.
+	 */
+	public static void rollbackBatch() {
+		batch.remove();
+	}
+
+	private static void compactIfNeeded(WriteAheadLog log) {
+		if (log.size() >= compactionThreshold && compactionPending.compareAndSet(false, true)) {
+			snapshotter.execute(() -> {
+				try {
+					compact();
+				} finally {
+					compactionPending.set(false);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes a new snapshot of the model and discards the log records it
+	 * contains.
+	 */
+	public static synchronized boolean compact() {
+		WriteAheadLog log = writeAheadLog;
+		if (log == null)
+			return false;
+		// Only reading the current view of the model and rotating the log happen
+		// under the log lock; the view is copied and serialized afterwards, while
+		// appends go on. Every record in the rotated segment belongs to a mutation
+		// that was published in the model before it was appended, so the view
+		// covers all of them. The snapshot shares the entities with the model, so
+		// it has the fields of an entity as they are when it is written.
+		ModelView view;
+		synchronized (log) {
+			view = manager.getView();
+			try {
+				log.rotate();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+		}
+		if (!saveSnapshot(RegistrationManager.copyOf(view)))
+			return false;
+		try {
+			log.deletePreviousSegment();
 		} catch (IOException e) {
 			e.printStackTrace();
 			return false;
 		}
+		lastSnapshotMillis = System.currentTimeMillis();
+		return true;
+	}
+
+	/**
+	 * @return the number of logged mutations that are not part of a snapshot on
+	 *         disk yet
+	 */
+	public static int getSnapshotLag() {
+		WriteAheadLog log = writeAheadLog;
+		return log == null ? 0 : log.lag();
+	}
+
+	/**
+	 * @return the time in milliseconds since the last snapshot was loaded or
+	 *         written
+	 */
+	public static long getSnapshotAge() {
+		return System.currentTimeMillis() - lastSnapshotMillis;
+	}
+
+	public static boolean saveToXMLwithXStream(Object obj) {
+		return saveToXMLwithXStream(obj, new File(filename));
+	}
+
+	// The document is streamed to disk through a buffered writer instead of being
+	// built as one string first, so memory use does not grow with the model. It
+	// goes to a temporary file that replaces the snapshot once it is complete.
+	private static boolean saveToXMLwithXStream(Object obj, File file) {
+		xstream.setMode(XStream.ID_REFERENCES);
+		Path target = file.toPath().toAbsolutePath();
+		Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+		synchronized (snapshotLock) {
+			try {
+				try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+					xstream.toXML(obj, writer); // save our xml file
+				}
+				Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				return true;
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+		}
 	}
 
 	public static Object loadFromXMLwithXStream() {
+		return loadFromXMLwithXStream(new File(filename));
+	}
+
+	private static Object loadFromXMLwithXStream(File file) {
 		xstream.setMode(XStream.ID_REFERENCES);
+		try (Reader reader = new InputStreamReader(new BufferedInputStream(Files.newInputStream(file.toPath())),
+				StandardCharsets.UTF_8)) {
+			return xstream.fromXML(reader); // load our xml file
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the model in the configured {@link SnapshotFormat}.
+	 */
+	public static boolean saveSnapshot(RegistrationManager rm) {
+		if (snapshotFormat == SnapshotFormat.XML)
+			return saveToXMLwithXStream(rm);
 		try {
-			FileReader fileReader = new FileReader(filename); // load our xml file
-			return xstream.fromXML(fileReader);
+			writeBinarySnapshot(rm, new File(filename));
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	private static void writeBinarySnapshot(RegistrationManager rm, File file) throws IOException {
+		synchronized (snapshotLock) {
+			BinarySnapshot.write(rm, file);
+		}
+	}
+
+	/**
+	 * Loads the model from the snapshot file, whichever format it is in.
+	 */
+	public static RegistrationManager loadSnapshot() {
+		File file = new File(filename);
+		if (!BinarySnapshot.isBinarySnapshot(file))
+			return (RegistrationManager) loadFromXMLwithXStream();
+		try {
+			return BinarySnapshot.read(file);
 		} catch (IOException e) {
 			e.printStackTrace();
 			return null;
 		}
 	}
 
+	/**
+	 * Converts an XML snapshot (e.g. an existing data.xml) into a binary one.
+	 */
+	public static boolean convertToBinary(String xmlFileName, String binaryFileName) {
+		setAliases();
+		RegistrationManager rm = (RegistrationManager) loadFromXMLwithXStream(new File(xmlFileName));
+		if (rm == null)
+			return false;
+		try {
+			writeBinarySnapshot(rm, new File(binaryFileName));
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Converts a binary snapshot back into the XML format.
+	 */
+	public static boolean convertToXML(String binaryFileName, String xmlFileName) {
+		RegistrationManager rm;
+		try {
+			rm = BinarySnapshot.read(new File(binaryFileName));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		setAliases();
+		return saveToXMLwithXStream(rm, new File(xmlFileName));
+	}
+
+	public static void setSnapshotFormat(SnapshotFormat format) {
+		snapshotFormat = format;
+	}
+
+	public static SnapshotFormat getSnapshotFormat() {
+		return snapshotFormat;
+	}
+
+	private static void setAliases() {
+		setAlias("event", Event.class);
+		setAlias("participant", Participant.class);
+		setAlias("registration", Registration.class);
+		setAlias("manager", RegistrationManager.class);
+		// the model lists are written like the ArrayLists they used to be, so the
+		// XML format does not change
+		xstream.registerConverter(new CollectionConverter(xstream.getMapper(), ConcurrentOrderedList.class));
+		xstream.addDefaultImplementation(ConcurrentOrderedList.class, List.class);
+	}
+
 	public static void setAlias(String xmlTagName, Class<?> className) {
 		xstream.alias(xmlTagName, className);
 	}
@@ -95,6 +545,8 @@ public class PersistenceXStream {
 			fooWriter = new FileWriter(myFoo, false);
 			fooWriter.write("");
 			fooWriter.close();
+			if (writeAheadLog != null)
+				writeAheadLog.truncate();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -0,0 +1,80 @@
+package ca.mcgill.ecse321.eventregistration.persistence;
+
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+import ca.mcgill.ecse321.eventregistration.model.Registration;
+import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
+
+/**
+ * Storage backend for the model. The service applies every mutation to the
+ * in-memory {@link RegistrationManager} first and then hands the new entity to
+ * the repository, so a backend may either store single rows or save the whole
+ * model it is given.
+ */
+public interface RegistrationRepository {
+
+	/**
+	 * Loads the stored model, or creates an empty one if nothing is stored yet.
+	 */
+	RegistrationManager load();
+
+	boolean saveParticipant(RegistrationManager rm, Participant p);
+
+	boolean saveEvent(RegistrationManager rm, Event e);
+
+	boolean saveRegistration(RegistrationManager rm, Registration r);
+
+	/**
+	 * Removes a registration that has been removed from the model.
+	 */
+	boolean deleteRegistration(RegistrationManager rm, Registration r);
+
+	/**
+	 * Removes a participant that has been removed from the model, together with
+	 * their registrations.
+	 */
+	boolean deleteParticipant(RegistrationManager rm, Participant p);
+
+	/**
+	 * Removes an event that has been removed from the model, together with its
+	 * registrations.
+	 */
+	boolean deleteEvent(RegistrationManager rm, Event e);
+
+	/**
+	 * Stores the whole model, e.g. to import it from another backend.
+	 */
+	boolean saveAll(RegistrationManager rm);
+
+	/**
+	 * Durably records that registration ids below the limit may be in use;
+	 * {@link #load()} continues numbering behind the last recorded limit. Backends
+	 * that cannot record it rely on the ids of the saved registrations.
+	 */
+	default boolean reserveIds(int limit) {
+		return true;
+	}
+
+	/**
+	 * Starts a group of saves made by the calling thread that only have to be
+	 * durable once {@link #commitBatch()} returns. Backends may defer or combine
+	 * the work of the individual saves until then.
+	 */
+	default void beginBatch() {
+	}
+
+	/**
+	 * Makes the saves since {@link #beginBatch()} durable.
+	 */
+	default boolean commitBatch() {
+		return true;
+	}
+
+	/**
+	 * Ends the group of saves since {@link #beginBatch()} without making them
+	 * durable, discarding the ones the backend has not written yet.
+	 */
+	default void rollbackBatch() {
+	}
+
+}
@@ -0,0 +1,17 @@
+package ca.mcgill.ecse321.eventregistration.persistence;
+
+/**
+ * The file format used when the model snapshot is written. Loading detects the
+ * format of an existing snapshot by itself, so switching formats converts the
+ * snapshot on the next save.
+ */
+public enum SnapshotFormat {
+	/**
+	 * XStream XML, the original data.xml format
+	 */
+	XML,
+	/**
+	 * Versioned binary format with a string table, see {@link BinarySnapshot}
+	 */
+	BINARY
+}
@@ -0,0 +1,471 @@
+package ca.mcgill.ecse321.eventregistration.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+import ca.mcgill.ecse321.eventregistration.model.Registration;
+import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
+
+/**
+ * Append-only log of model mutations, written next to the snapshot file.
+ *
+ * Every record is framed as [length][crc32][payload] so that a torn write at
+ * the end of the file (e.g. after a crash) is detected and ignored on replay.
+ * Replaying is idempotent: records describing entities that are already part of
+ * the snapshot are skipped, and so are removals of entities that are not.
+ *
+ * Except in {@link Durability#SYNC} mode, records are not written by the calling
+ * thread: they are queued and a flusher thread writes everything that
+ * accumulated with one gathering write and one fsync (group commit).
+ *
+ * When a snapshot is taken the log is rotated: the current file becomes the
+ * previous segment, which is deleted once the snapshot is on disk. Until then
+ * both segments are replayed on startup.
+ */
+class WriteAheadLog {
+
+	static final byte PARTICIPANT = 'P';
+	static final byte EVENT = 'E';
+	static final byte REGISTRATION = 'R';
+	static final byte REGISTRATION_REMOVAL = 'r';
+	static final byte PARTICIPANT_REMOVAL = 'p';
+	static final byte EVENT_REMOVAL = 'e';
+
+	private static final int HEADER_SIZE = 8;
+
+	private final File file;
+	private final File previousSegment;
+	private FileChannel channel;
+	private final Durability durability;
+	private final long maxDelayMillis;
+	// serializes writes and truncation of the channel; the monitor of this object
+	// only guards the queue so that appending never waits for disk I/O
+	private final Object ioLock = new Object();
+	private int records;
+	private int previousRecords;
+	private List<PendingRecord> pending = new ArrayList<>();
+	private Thread flusher;
+	private boolean closed;
+
+	WriteAheadLog(File file) throws IOException {
+		this(file, Durability.SYNC, 0);
+	}
+
+	/**
+	 * @param maxDelayMillis
+	 *            how long the flusher waits for further records before writing a
+	 *            group; ignored in {@link Durability#SYNC} mode
+	 */
+	WriteAheadLog(File file, Durability durability, long maxDelayMillis) throws IOException {
+		this.file = file;
+		this.previousSegment = new File(file.getPath() + ".prev");
+		this.durability = durability;
+		this.maxDelayMillis = maxDelayMillis;
+		this.channel = open(file);
+		if (durability != Durability.SYNC) {
+			flusher = new Thread(this::flushLoop, "persistence-log-flusher");
+			flusher.setDaemon(true);
+			flusher.start();
+		}
+	}
+
+	private static FileChannel open(File file) throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	Durability getDurability() {
+		return durability;
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the number of records appended since the log was opened or last
+	 *         rotated
+	 */
+	synchronized int size() {
+		return records;
+	}
+
+	/**
+	 * @return the number of records that are not covered by a snapshot on disk
+	 *         yet, i.e. those of the current and the previous segment
+	 */
+	synchronized int lag() {
+		return records + previousRecords;
+	}
+
+	/**
+	 * Starts a new segment. Every record appended so far belongs to a mutation
+	 * that is visible in the model, so a view of the model taken while holding
+	 * the monitor of this log covers the previous segment.
+	 *
+	 * @return false if the previous segment still exists because its snapshot
+	 *         failed; the log is then left as it is
+	 */
+	synchronized boolean rotate() throws IOException {
+		if (previousSegment.exists())
+			return false;
+		synchronized (ioLock) {
+			channel.close();
+			Files.move(file.toPath(), previousSegment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			channel = open(file);
+		}
+		// queued records are written to the new segment
+		previousRecords = records - pending.size();
+		records = pending.size();
+		return true;
+	}
+
+	/**
+	 * Deletes the previous segment once a snapshot covering it is on disk.
+	 */
+	synchronized void deletePreviousSegment() throws IOException {
+		Files.deleteIfExists(previousSegment.toPath());
+		previousRecords = 0;
+	}
+
+	synchronized boolean hasPreviousSegment() {
+		return previousSegment.exists();
+	}
+
+	/**
+	 * @return a future that completes once the record is on disk
+	 */
+	CompletableFuture<Void> appendParticipant(Participant p) throws IOException {
+		RecordWriter record = new RecordWriter(PARTICIPANT);
+		record.out.writeUTF(p.getName());
+		return append(record);
+	}
+
+	CompletableFuture<Void> appendEvent(Event e) throws IOException {
+		RecordWriter record = new RecordWriter(EVENT);
+		record.out.writeUTF(e.getName());
+		record.out.writeLong(e.getEventDate().getTime());
+		record.out.writeLong(e.getStartTime().getTime());
+		record.out.writeLong(e.getEndTime().getTime());
+		record.out.writeInt(e.getCapacity());
+		return append(record);
+	}
+
+	CompletableFuture<Void> appendRegistration(Registration r) throws IOException {
+		RecordWriter record = new RecordWriter(REGISTRATION);
+		record.out.writeUTF(r.getParticipant().getName());
+		record.out.writeUTF(r.getEvent().getName());
+		record.out.writeInt(r.getId());
+		return append(record);
+	}
+
+	CompletableFuture<Void> appendRegistrationRemoval(Registration r) throws IOException {
+		RecordWriter record = new RecordWriter(REGISTRATION_REMOVAL);
+		record.out.writeUTF(r.getParticipant().getName());
+		record.out.writeUTF(r.getEvent().getName());
+		return append(record);
+	}
+
+	/**
+	 * The registrations of the participant are removed with it on replay.
+	 */
+	CompletableFuture<Void> appendParticipantRemoval(Participant p) throws IOException {
+		RecordWriter record = new RecordWriter(PARTICIPANT_REMOVAL);
+		record.out.writeUTF(p.getName());
+		return append(record);
+	}
+
+	CompletableFuture<Void> appendEventRemoval(Event e) throws IOException {
+		RecordWriter record = new RecordWriter(EVENT_REMOVAL);
+		record.out.writeUTF(e.getName());
+		return append(record);
+	}
+
+	private synchronized CompletableFuture<Void> append(RecordWriter record) throws IOException {
+		if (closed)
+			throw new IOException("Write-ahead log " + file + " is closed");
+		records++;
+		PendingRecord pendingRecord = new PendingRecord(record.toFrame());
+		if (durability == Durability.SYNC) {
+			write(new ByteBuffer[] { pendingRecord.frame });
+			pendingRecord.done.complete(null);
+		} else {
+			pending.add(pendingRecord);
+			notifyAll();
+		}
+		return pendingRecord.done;
+	}
+
+	private void write(ByteBuffer[] frames) throws IOException {
+		synchronized (ioLock) {
+			long remaining = 0;
+			for (ByteBuffer frame : frames)
+				remaining += frame.remaining();
+			while (remaining > 0) {
+				remaining -= channel.write(frames);
+			}
+			channel.force(false);
+		}
+	}
+
+	private void flushLoop() {
+		while (true) {
+			List<PendingRecord> group;
+			synchronized (this) {
+				while (pending.isEmpty() && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+				if (pending.isEmpty())
+					return;
+			}
+			if (maxDelayMillis > 0) {
+				try {
+					Thread.sleep(maxDelayMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (this) {
+				group = pending;
+				pending = new ArrayList<>();
+			}
+			ByteBuffer[] frames = new ByteBuffer[group.size()];
+			for (int i = 0; i < frames.length; i++)
+				frames[i] = group.get(i).frame;
+			try {
+				write(frames);
+				for (PendingRecord pendingRecord : group)
+					pendingRecord.done.complete(null);
+			} catch (IOException e) {
+				for (PendingRecord pendingRecord : group)
+					pendingRecord.done.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Discards all records, typically right after a snapshot has been written.
+	 */
+	synchronized void truncate() throws IOException {
+		synchronized (ioLock) {
+			channel.truncate(0);
+		}
+		deletePreviousSegment();
+		records = pending.size();
+	}
+
+	/**
+	 * Writes the queued records and closes the log.
+	 */
+	void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		if (flusher != null) {
+			try {
+				flusher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (ioLock) {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Applies all intact records of the previous and the current segment to the
+	 * given model.
+	 *
+	 * @return the number of records that changed the model
+	 */
+	synchronized int replay(RegistrationManager rm) throws IOException {
+		Replay replay = new Replay(rm);
+		if (previousSegment.exists()) {
+			replay.segment(previousSegment);
+			previousRecords = replay.records;
+			replay.records = 0;
+		}
+		long validLength = replay.segment(file);
+		records += replay.records;
+		// drop a torn tail so that new records are not appended after garbage
+		synchronized (ioLock) {
+			if (channel.size() > validLength)
+				channel.truncate(validLength);
+		}
+		return replay.applied;
+	}
+
+	private static class Replay {
+		private final RegistrationManager rm;
+		private final Map<String, Participant> participants = new HashMap<>();
+		private final Map<String, Event> events = new HashMap<>();
+		private int records;
+		private int applied;
+
+		Replay(RegistrationManager rm) {
+			this.rm = rm;
+			for (Participant p : rm.getParticipants())
+				participants.put(p.getName(), p);
+			for (Event e : rm.getEvents())
+				events.put(e.getName(), e);
+		}
+
+		/**
+		 * @return the length of the intact prefix of the segment
+		 */
+		long segment(File segment) throws IOException {
+			long validLength = 0;
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			try (FileChannel in = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+				while (true) {
+					header.clear();
+					if (!readFully(in, header))
+						break;
+					header.flip();
+					int length = header.getInt();
+					int crc = header.getInt();
+					if (length <= 0 || length > in.size() - in.position())
+						break;
+					ByteBuffer payload = ByteBuffer.allocate(length);
+					if (!readFully(in, payload) || checksum(payload.array(), length) != crc)
+						break;
+					if (!apply(new DataInputStream(new ByteArrayInputStream(payload.array()))))
+						break;
+					validLength = in.position();
+					records++;
+				}
+			}
+			return validLength;
+		}
+
+		private boolean apply(DataInputStream data) throws IOException {
+			byte type = data.readByte();
+			if (type == PARTICIPANT) {
+				String name = data.readUTF();
+				if (!participants.containsKey(name)) {
+					Participant p = new Participant(name);
+					participants.put(name, p);
+					rm.addParticipant(p);
+					applied++;
+				}
+			} else if (type == EVENT) {
+				String name = data.readUTF();
+				Date date = new Date(data.readLong());
+				Time startTime = new Time(data.readLong());
+				Time endTime = new Time(data.readLong());
+				// logs written before events had a capacity have none
+				int capacity = data.available() >= 4 ? data.readInt() : 0;
+				if (!events.containsKey(name)) {
+					Event e = new Event(name, date, startTime, endTime);
+					e.setCapacity(capacity);
+					events.put(name, e);
+					rm.addEvent(e);
+					applied++;
+				}
+			} else if (type == REGISTRATION) {
+				String participantName = data.readUTF();
+				String eventName = data.readUTF();
+				// logs written before registrations kept their ids have no id
+				int id = data.available() >= 4 ? data.readInt() : 0;
+				Participant p = participants.get(participantName);
+				Event e = events.get(eventName);
+				if (p != null && e != null && rm.getRegistration(participantName, eventName) == null) {
+					rm.addRegistration(id > 0 ? new Registration(id, p, e) : new Registration(p, e));
+					applied++;
+				}
+			} else if (type == REGISTRATION_REMOVAL) {
+				String participantName = data.readUTF();
+				String eventName = data.readUTF();
+				Registration r = rm.getRegistration(participantName, eventName);
+				if (r != null) {
+					rm.removeRegistration(r);
+					applied++;
+				}
+			} else if (type == PARTICIPANT_REMOVAL) {
+				Participant p = participants.remove(data.readUTF());
+				if (p != null) {
+					rm.removeParticipant(p);
+					applied++;
+				}
+			} else if (type == EVENT_REMOVAL) {
+				Event e = events.remove(data.readUTF());
+				if (e != null) {
+					rm.removeEvent(e);
+					applied++;
+				}
+			} else {
+				return false;
+			}
+			return true;
+		}
+	}
+
+	private static boolean readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static int checksum(byte[] bytes, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, length);
+		return (int) crc.getValue();
+	}
+
+	private static class PendingRecord {
+		private final ByteBuffer frame;
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		PendingRecord(ByteBuffer frame) {
+			this.frame = frame;
+		}
+	}
+
+	private static class RecordWriter {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		private final DataOutputStream out = new DataOutputStream(bytes);
+
+		RecordWriter(byte type) throws IOException {
+			out.writeByte(type);
+		}
+
+		ByteBuffer toFrame() {
+			byte[] payload = bytes.toByteArray();
+			ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+			frame.putInt(payload.length);
+			frame.putInt(checksum(payload, payload.length));
+			frame.put(payload);
+			frame.flip();
+			return frame;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package ca.mcgill.ecse321.eventregistration.persistence;
+
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+import ca.mcgill.ecse321.eventregistration.model.Registration;
+import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
+
+/**
+ * Repository backed by the snapshot file (and write-ahead log, if enabled) of
+ * {@link PersistenceXStream}.
+ */
+public class XStreamRegistrationRepository implements RegistrationRepository {
+
+	private final String filename;
+
+	/**
+	 * Uses the file {@link PersistenceXStream} is currently set up with.
+	 */
+	public XStreamRegistrationRepository() {
+		this(PersistenceXStream.getFilename());
+	}
+
+	public XStreamRegistrationRepository(String filename) {
+		this.filename = filename;
+	}
+
+	@Override
+	public RegistrationManager load() {
+		return PersistenceXStream.initializeModelManager(filename);
+	}
+
+	@Override
+	public boolean saveParticipant(RegistrationManager rm, Participant p) {
+		return PersistenceXStream.persistParticipant(rm, p);
+	}
+
+	@Override
+	public boolean saveEvent(RegistrationManager rm, Event e) {
+		return PersistenceXStream.persistEvent(rm, e);
+	}
+
+	@Override
+	public boolean saveRegistration(RegistrationManager rm, Registration r) {
+		return PersistenceXStream.persistRegistration(rm, r);
+	}
+
+	@Override
+	public boolean deleteRegistration(RegistrationManager rm, Registration r) {
+		return PersistenceXStream.persistRegistrationRemoval(rm, r);
+	}
+
+	@Override
+	public boolean deleteParticipant(RegistrationManager rm, Participant p) {
+		return PersistenceXStream.persistParticipantRemoval(rm, p);
+	}
+
+	@Override
+	public boolean deleteEvent(RegistrationManager rm, Event e) {
+		return PersistenceXStream.persistEventRemoval(rm, e);
+	}
+
+	@Override
+	public boolean saveAll(RegistrationManager rm) {
+		return PersistenceXStream.saveSnapshot(rm);
+	}
+
+	@Override
+	public boolean reserveIds(int limit) {
+		return PersistenceXStream.reserveIds(limit);
+	}
+
+	@Override
+	public void beginBatch() {
+		PersistenceXStream.beginBatch();
+	}
+
+	@Override
+	public boolean commitBatch() {
+		return PersistenceXStream.commitBatch();
+	}
+
+	@Override
+	public void rollbackBatch() {
+		PersistenceXStream.rollbackBatch();
+	}
+
+}
@@ -2,23 +2,104 @@ package ca.mcgill.ecse321.eventregistration.service;
 
 import java.sql.Date;
 import java.sql.Time;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.ToLongFunction;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.ModelView;
 import ca.mcgill.ecse321.eventregistration.model.Participant;
 import ca.mcgill.ecse321.eventregistration.model.Registration;
 import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
-import ca.mcgill.ecse321.eventregistration.persistence.PersistenceXStream;
+import ca.mcgill.ecse321.eventregistration.persistence.RegistrationRepository;
+import ca.mcgill.ecse321.eventregistration.persistence.XStreamRegistrationRepository;
 
 @Service
 public class EventRegistrationService {
+	private static final Logger log = LoggerFactory.getLogger(EventRegistrationService.class);
+
 	private RegistrationManager rm;
+	private RegistrationRepository repository;
+	private SingleWriter writer;
+	private boolean rejectConflicts;
+
+	// one turn of the wheel covers more than an hour with the default tick
+	private static final int HOLD_WHEEL_TICKS = 4096;
+	private long holdTickMillis = 1000;
+	private TimingWheel<SeatHold> holdExpiry;
+	private final AtomicLong holdIds = new AtomicLong();
+	private final ConcurrentMap<Long, SeatHold> holds = new ConcurrentHashMap<>();
+	// holds by participant and event name, at most one each
+	private final ConcurrentMap<String, SeatHold> holdsByPair = new ConcurrentHashMap<>();
+	// orders the persisted mutations of each participant and event name
+	private static final Object[] nameLocks = new Object[64];
+	static {
+		for (int i = 0; i < nameLocks.length; i++)
+			nameLocks[i] = new Object();
+	}
+
+	/**
+	 * Largest number of entities a page can hold, which bounds the work of one
+	 * request however large the model grows.
+	 */
+	public static final int MAX_PAGE_SIZE = 1000;
+	private static final String CREATED = "created";
+	private static final String NAME = "name";
+	private static final String DATE = "date";
 
 	public EventRegistrationService(RegistrationManager rm) {
+		this(rm, new XStreamRegistrationRepository());
+	}
+
+	@Autowired
+	public EventRegistrationService(RegistrationManager rm, RegistrationRepository repository) {
 		this.rm = rm;
+		this.repository = repository;
+	}
+
+	/**
+	 * Applies all mutations through the given writer, see {@link SingleWriter}.
+	 */
+	@Autowired(required = false)
+	public void setWriter(SingleWriter writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Whether registering for an event that overlaps an event the participant is
+	 * already registered for fails. Otherwise such registrations are allowed and
+	 * can be listed with {@link #findConflicts(Participant)}.
+	 */
+	@Value("${registration.reject-conflicts:false}")
+	public void setRejectConflicts(boolean rejectConflicts) {
+		this.rejectConflicts = rejectConflicts;
+	}
+
+	/**
+	 * How often expired seat holds are released.
+	 */
+	@Value("${registration.hold-tick-millis:1000}")
+	public synchronized void setHoldTickMillis(long holdTickMillis) {
+		if (holdExpiry != null)
+			throw new IllegalStateException("Seats are held already");
+		this.holdTickMillis = holdTickMillis;
 	}
 
 	private boolean checkIfEmptyOrNull(String name) {
@@ -28,40 +109,60 @@ public class EventRegistrationService {
 	public Participant createParticipant(String name) throws InvalidInputException {
 		if (checkIfEmptyOrNull(name))
 			throw new InvalidInputException("Participant name cannot be empty!");
-		//check if participant name already exists
-		for(Participant tmp: rm.getParticipants()) {
-			if(tmp.getName().equals(name))
-				throw new InvalidInputException("Participant name already exists");
-		}
+		//check if participant name already exists, the model reserves the name
+		//atomically when the participant is added
+		if (checkIfParticipantExists(name))
+			throw new InvalidInputException("Participant name already exists");
 		
 		Participant p = new Participant(name);
 		
-		rm.addParticipant(p);
-		PersistenceXStream.saveToXMLwithXStream(rm);
-		return p;
+		return execute(p.getName(), null, () -> {
+			if (!rm.addParticipant(p))
+				throw new InvalidInputException("Participant name already exists");
+			return p;
+		}, added -> repository.saveParticipant(rm, added));
 	}
 
 	public Event createEvent(String name, Date date, Time startTime, Time endTime) throws InvalidInputException {
+		return createEvent(name, date, startTime, endTime, 0);
+	}
+
+	/**
+	 * @param capacity
+	 *            number of seats, 0 for no limit; participants who register when
+	 *            all seats are taken are put on the waitlist of the event
+	 */
+	public Event createEvent(String name, Date date, Time startTime, Time endTime, int capacity)
+			throws InvalidInputException {
 		if(name == null || date == null || startTime == null || endTime == null) 
 			throw new InvalidInputException("Event name cannot be empty! Event date cannot be empty! Event start time cannot be empty! Event end time cannot be empty!");
 		else if (name.trim().contentEquals(""))
 			throw new InvalidInputException("Event name cannot be empty!");				
 		else if (startTime.compareTo(endTime) > 0)
 			throw new InvalidInputException("Event end time cannot be before event start time!");
+		else if (capacity < 0)
+			throw new InvalidInputException("Event capacity cannot be negative!");
 		
-		//check if event already exists
-		for(Event tmp: rm.getEvents()) {
-			if(tmp.getName().contentEquals(name))
-				throw new InvalidInputException("Event name already exists");
-		}
+		//check if event already exists, the model reserves the name atomically when
+		//the event is added
+		if (checkIfEventExists(name))
+			throw new InvalidInputException("Event name already exists");
 		
 		Event e = new Event(name, date, startTime, endTime);
-		rm.addEvent(e);
-		PersistenceXStream.saveToXMLwithXStream(rm);
-
-		return e;
+		e.setCapacity(capacity);
+		return execute(e.getName(), null, () -> {
+			if (!rm.addEvent(e))
+				throw new InvalidInputException("Event name already exists");
+			return e;
+		}, added -> repository.saveEvent(rm, added));
 	}
 
+	/**
+	 * Registers the participant for the event. If all seats of the event are
+	 * taken, or other participants are waiting for one, the participant is put
+	 * on the waitlist of the event and a {@link WaitlistedException} is thrown.
+	 * Waitlists are kept in memory only.
+	 */
 	public Registration register(Participant p, Event e) throws InvalidInputException {
 		if (p == null || e == null)
 			throw new InvalidInputException("Participant needs to be selected for registration! Event needs to be selected for registration!");
@@ -69,74 +170,638 @@ public class EventRegistrationService {
 			throw new InvalidInputException("Participant does not exist! Event does not exist!");			
 		}
 		
-		//check if p has already registered for e
-		for(Event tmp: getEventsForParticipant(p)) {
-			if(tmp.getName().contentEquals(e.getName()))
-				throw new InvalidInputException("Participant " + p.getName() + " has already registered for " + e.getName());
-		}
+		//check if p has already registered for e, the model checks again atomically
+		//when the registration is added
+		String alreadyRegistered = "Participant " + p.getName() + " has already registered for " + e.getName();
+		if (rm.getRegistration(p.getName(), e.getName()) != null)
+			throw new InvalidInputException(alreadyRegistered);
+		if (rm.isWaitlisted(p.getName(), e.getName()))
+			throw new InvalidInputException(alreadyWaitlisted(p, e));
 		
-		Registration r = new Registration(p, e);
-		rm.addRegistration(r);
-		PersistenceXStream.saveToXMLwithXStream(rm);
+		Registration registration = execute(p.getName(), e.getName(), () -> addWithoutConflict(p, e, () -> addRegistration(p, e, alreadyRegistered)),
+				added -> added == null || repository.saveRegistration(rm, added));
+		if (registration != null)
+			return registration;
+
+		// a seat may have been freed before the participant joined the waitlist
+		promote(e);
+		registration = rm.getRegistration(p.getName(), e.getName());
+		if (registration != null)
+			return registration;
+		throw new WaitlistedException(
+				"Event " + e.getName() + " is full! Participant " + p.getName() + " was put on the waitlist");
+	}
+
+	// Adds a registration of the participant, after checking that it does not
+	// overlap one of their events if conflicts are rejected
+	private Registration addWithoutConflict(Participant p, Event e, SingleWriter.Mutation<Registration> add)
+			throws InvalidInputException {
+		if (!rejectConflicts)
+			return add.apply();
+		// registrations of the same participant are checked and added one at a time
+		Participant lock = rm.getParticipant(p.getName());
+		synchronized (lock == null ? p : lock) {
+			Event overlap = rm.getOverlappingEvent(p.getName(), e);
+			if (overlap != null && rm.getRegistration(p.getName(), e.getName()) == null)
+				throw new InvalidInputException("Participant " + p.getName() + " has already registered for "
+						+ overlap.getName() + " at the same time");
+			return add.apply();
+		}
+	}
+
+	// Returns null if the participant was put on the waitlist instead
+	private Registration addRegistration(Participant p, Event e, String alreadyRegistered)
+			throws InvalidInputException {
+		// newcomers queue up behind the participants who are already waiting
+		if (!rm.hasWaitlist(e.getName()) && hasFreeSeat(e)) {
+			Registration r = new Registration(p, e);
+			if (rm.addRegistration(r)) {
+				removeIfDeleted(r);
+				return r;
+			}
+			if (rm.getRegistration(p.getName(), e.getName()) != null)
+				throw new InvalidInputException(alreadyRegistered);
+		}
+		if (!rm.addToWaitlist(p, e))
+			throw new InvalidInputException(alreadyWaitlisted(p, e));
+		return null;
+	}
+
+	// A participant or event that is deleted releases its name before it removes
+	// its registrations, so a registration added concurrently is either removed
+	// with them or sees that the name is gone and removes itself
+	private void removeIfDeleted(Registration r) throws InvalidInputException {
+		if (checkIfParticipantExists(r.getParticipant().getName()) && checkIfEventExists(r.getEvent().getName()))
+			return;
+		rm.removeRegistration(r);
+		throw new InvalidInputException("Participant does not exist! Event does not exist!");
+	}
+
+	private static String alreadyWaitlisted(Participant p, Event e) {
+		return "Participant " + p.getName() + " is already on the waitlist for " + e.getName();
+	}
+
+	// The model takes the seat atomically when the registration is added, this
+	// only avoids creating registrations that cannot get one
+	private boolean hasFreeSeat(Event e) {
+		Event added = rm.getEvent(e.getName());
+		int capacity = (added == null ? e : added).getCapacity();
+		return capacity <= 0 || rm.getSeatsTaken(e.getName()) < capacity;
+	}
+
+	/**
+	 * Cancels the registration of the participant for the event and gives the
+	 * seat to the participant who has been waiting for it longest. A participant
+	 * on the waitlist is just removed from it.
+	 */
+	public void unregister(Participant p, Event e) throws InvalidInputException {
+		if (p == null || e == null)
+			throw new InvalidInputException("Participant needs to be selected for registration! Event needs to be selected for registration!");
+		if (rm.isWaitlisted(p.getName(), e.getName())
+				&& execute(() -> rm.removeFromWaitlist(p.getName(), e.getName()), removed -> true))
+			return;
+
+		String notRegistered = "Participant " + p.getName() + " is not registered for " + e.getName();
+		Registration r = rm.getRegistration(p.getName(), e.getName());
+		if (r == null)
+			throw new InvalidInputException(notRegistered);
+		execute(p.getName(), e.getName(), () -> {
+			if (!rm.removeRegistration(r))
+				throw new InvalidInputException(notRegistered);
+			return r;
+		}, removed -> repository.deleteRegistration(rm, removed));
+		promote(e);
+	}
+
+	// Registers waiting participants in the order they joined the waitlist while
+	// the event has free seats. Whoever frees a seat or joins the waitlist calls
+	// this afterwards, so no seat stays free while someone is waiting.
+	// Participants who were deleted, or who registered for an overlapping event
+	// meanwhile if conflicts are rejected, are dropped from the waitlist.
+	private void promote(Event e) throws InvalidInputException {
+		while (true) {
+			Participant waiting = rm.getFirstWaitlisted(e.getName());
+			if (waiting == null || !checkIfEventExists(e.getName()) || !hasFreeSeat(e))
+				return;
+			execute(waiting.getName(), e.getName(), () -> {
+				if (!checkIfParticipantExists(waiting.getName())) {
+					rm.removeFromWaitlist(waiting.getName(), e.getName());
+					return null;
+				}
+				try {
+					return addWithoutConflict(waiting, e, () -> {
+						Registration r = new Registration(waiting, e);
+						if (rm.addRegistration(r) || rm.getRegistration(waiting.getName(), e.getName()) != null)
+							rm.removeFromWaitlist(waiting.getName(), e.getName());
+						if (rm.getRegistration(waiting.getName(), e.getName()) != r)
+							return null;
+						removeIfDeleted(r);
+						return r;
+					});
+				} catch (InvalidInputException skipped) {
+					rm.removeFromWaitlist(waiting.getName(), e.getName());
+					return null;
+				}
+			}, added -> added == null || repository.saveRegistration(rm, added));
+		}
+	}
+
+	/**
+	 * Takes a seat of the event for the participant for the given number of
+	 * minutes. The participant is registered when they confirm the hold; if they
+	 * do not confirm in time, the seat is released.
+	 */
+	public SeatHold hold(Participant p, Event e, int minutes) throws InvalidInputException {
+		if (p == null || e == null)
+			throw new InvalidInputException("Participant needs to be selected for registration! Event needs to be selected for registration!");
+		else if (!checkIfParticipantExists(p.getName()) || !checkIfEventExists(e.getName()))
+			throw new InvalidInputException("Participant does not exist! Event does not exist!");
+		else if (minutes <= 0)
+			throw new InvalidInputException("Hold duration must be positive!");
+		if (rm.getRegistration(p.getName(), e.getName()) != null)
+			throw new InvalidInputException("Participant " + p.getName() + " has already registered for " + e.getName());
+
+		long now = System.currentTimeMillis();
+		// the seat is only given back to the event it was taken from
+		SeatHold hold = new SeatHold(holdIds.incrementAndGet(), rm.getParticipant(p.getName()), rm.getEvent(e.getName()),
+				now + minutes * 60000L);
+		String pair = holdKey(p, e);
+		execute(() -> {
+			if (holdsByPair.putIfAbsent(pair, hold) != null)
+				throw new InvalidInputException("Participant " + p.getName() + " already holds a seat for " + e.getName());
+			// participants on the waitlist get free seats first
+			if (rm.hasWaitlist(e.getName()) || !rm.holdSeat(hold.getEvent())) {
+				holdsByPair.remove(pair, hold);
+				throw new InvalidInputException("Event " + e.getName() + " has no free seat to hold");
+			}
+			holds.put(hold.getId(), hold);
+			return hold;
+		}, held -> true);
+		hold.timeout = getHoldExpiry().schedule(hold, now, minutes * 60000L);
+		return hold;
+	}
+
+	/**
+	 * Registers the participant of the hold on the held seat.
+	 */
+	public Registration confirm(long holdId) throws InvalidInputException {
+		SeatHold hold = takeHold(holdId);
+		Participant p = hold.getParticipant();
+		Event e = hold.getEvent();
+		String alreadyRegistered = "Participant " + p.getName() + " has already registered for " + e.getName();
+		try {
+			return execute(p.getName(), e.getName(), () -> addWithoutConflict(p, e, () -> {
+				Registration r = new Registration(p, e);
+				if (!rm.addHeldRegistration(r))
+					throw new InvalidInputException(alreadyRegistered);
+				hold.settled.set(true);
+				removeIfDeleted(r);
+				return r;
+			}), added -> repository.saveRegistration(rm, added));
+		} catch (InvalidInputException ex) {
+			releaseSeat(hold);
+			promote(e);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Gives up the held seat before the hold expires.
+	 */
+	public void release(long holdId) throws InvalidInputException {
+		SeatHold hold = takeHold(holdId);
+		releaseSeat(hold);
+		promote(hold.getEvent());
+	}
+
+	/**
+	 * @return the number of seats held and neither confirmed nor released yet
+	 */
+	public int getHoldCount() {
+		return holds.size();
+	}
+
+	// Exactly one of confirm, release and the expiry gets the hold
+	private SeatHold takeHold(long holdId) throws InvalidInputException {
+		SeatHold hold = holds.remove(holdId);
+		if (hold == null)
+			throw new InvalidInputException("Seat hold " + holdId + " does not exist or has expired");
+		holdsByPair.remove(holdKey(hold.getParticipant(), hold.getEvent()), hold);
+		if (hold.timeout != null)
+			hold.timeout.cancel();
+		return hold;
+	}
+
+	private void expire(SeatHold hold) {
+		if (!holds.remove(hold.getId(), hold))
+			return;
+		holdsByPair.remove(holdKey(hold.getParticipant(), hold.getEvent()), hold);
+		// a seat released without promoting goes to the waitlist with the next
+		// release or unregistration of the event
+		try {
+			releaseSeat(hold);
+			promote(hold.getEvent());
+		} catch (InvalidInputException | RuntimeException e) {
+			log.warn("Could not release the seat of {} held by seat hold {}", hold.getEvent().getName(), hold.getId(), e);
+		}
+	}
+
+	// The seats of deleted events are gone with them
+	private void releaseSeat(SeatHold hold) throws InvalidInputException {
+		execute(() -> {
+			if (hold.settled.compareAndSet(false, true) && rm.getEvent(hold.getEvent().getName()) == hold.getEvent())
+				rm.releaseHeldSeat(hold.getEvent());
+			return hold;
+		}, released -> true);
+	}
+
+	private synchronized TimingWheel<SeatHold> getHoldExpiry() {
+		if (holdExpiry == null) {
+			holdExpiry = new TimingWheel<>(holdTickMillis, HOLD_WHEEL_TICKS, System.currentTimeMillis(), this::expire);
+			holdExpiry.start("seat-hold-expiry");
+		}
+		return holdExpiry;
+	}
+
+	/**
+	 * Releases the holds that expired by the given time without waiting for the
+	 * expiry thread.
+	 */
+	void expireHolds(long now) {
+		getHoldExpiry().advance(now);
+	}
+
+	private static String holdKey(Participant p, Event e) {
+		return p.getName() + '\u0000' + e.getName();
+	}
+
+	/**
+	 * Deletes the participant and their registrations, in time proportional to
+	 * the number of registrations. The seats they had go to the waitlists; their
+	 * places on waitlists and their seat holds are dropped when they come up.
+	 */
+	public void deleteParticipant(Participant p) throws InvalidInputException {
+		if (p == null)
+			throw new InvalidInputException("Participant needs to be selected for deletion!");
+		Participant existing = rm.getParticipant(p.getName());
+		if (existing == null)
+			throw new InvalidInputException("Participant was not found");
+		List<Event> freed = execute(existing.getName(), null, () -> {
+			List<Event> events = getEventsForParticipant(existing);
+			if (!rm.removeParticipant(existing))
+				throw new InvalidInputException("Participant was not found");
+			return events;
+		}, events -> repository.deleteParticipant(rm, existing));
+		for (Event e : freed)
+			promote(e);
+	}
+
+	/**
+	 * Deletes the event with its registrations and waitlist, in time proportional
+	 * to the number of registrations.
+	 */
+	public void deleteEvent(Event e) throws InvalidInputException {
+		if (e == null)
+			throw new InvalidInputException("Event needs to be selected for deletion!");
+		Event existing = rm.getEvent(e.getName());
+		if (existing == null)
+			throw new InvalidInputException("Event was not found");
+		execute(existing.getName(), null, () -> {
+			if (!rm.removeEvent(existing))
+				throw new InvalidInputException("Event was not found");
+			return existing;
+		}, removed -> repository.deleteEvent(rm, removed));
+	}
+
+	/**
+	 * @return the participants waiting for a seat of the event, longest waiting
+	 *         first
+	 */
+	public List<Participant> getWaitlist(Event e) {
+		return rm.getWaitlist(e.getName());
+	}
+
+	// Mutations run on the caller's thread, or on the writer thread in single
+	// writer mode. A change the repository could not store fails the request.
+	private <T> T execute(SingleWriter.Mutation<T> mutation, SingleWriter.Persistence<T> persistence)
+			throws InvalidInputException {
+		if (writer != null)
+			return writer.execute(mutation, persistence);
+		T result = mutation.apply();
+		if (!persistence.save(result))
+			throw new InvalidInputException(SingleWriter.NOT_SAVED);
+		return result;
+	}
+
+	// Persisted mutations of a participant or event hold the lock of its name
+	// from applying the change until it is persisted, so the log gets their
+	// records in the order they were applied. Registrations hold the locks of
+	// both names. The single writer persists in the order it applies already.
+	private <T> T execute(String name, String otherName, SingleWriter.Mutation<T> mutation,
+			SingleWriter.Persistence<T> persistence) throws InvalidInputException {
+		if (writer != null)
+			return writer.execute(mutation, persistence);
+		int first = nameLockIndex(name);
+		int second = otherName == null ? first : nameLockIndex(otherName);
+		synchronized (nameLocks[Math.min(first, second)]) {
+			synchronized (nameLocks[Math.max(first, second)]) {
+				return execute(mutation, persistence);
+			}
+		}
+	}
 
-		return r;
+	private static int nameLockIndex(String name) {
+		int hash = name == null ? 0 : name.hashCode();
+		return (hash ^ (hash >>> 16)) & (nameLocks.length - 1);
 	}
 	
 	private boolean checkIfParticipantExists(String name) {
-		for(Participant p: rm.getParticipants())
-			if(p.getName().contentEquals(name))
-				return true;
-		return false;
+		return rm.getParticipant(name) != null;
 	}
 	
 	private boolean checkIfEventExists(String name) {
-		for(Event e: rm.getEvents())
-			if(e.getName().contentEquals(name))
-				return true;
-		return false;
+		return rm.getEvent(name) != null;
 	}
 	
+	/**
+	 * @return the latest published state of the model; it never changes, so
+	 *         lists taken from it agree with each other
+	 */
+	public ModelView getModelView() {
+		return rm.getView();
+	}
+
+	/**
+	 * @return a number that grows with every change of the model, so that
+	 *         anything computed from the model can tell whether it is still
+	 *         current
+	 */
+	public long getVersion() {
+		return rm.getVersion();
+	}
+
+	public long getParticipantsVersion() {
+		return rm.getParticipantsVersion();
+	}
+
+	public long getEventsVersion() {
+		return rm.getEventsVersion();
+	}
+
+	public long getRegistrationsVersion() {
+		return rm.getRegistrationsVersion();
+	}
+
+	/**
+	 * @return the model version at which the participant or their registrations
+	 *         last changed, or -1 if there is no such participant
+	 */
+	public long getParticipantVersion(String name) {
+		return rm.getParticipantVersion(name);
+	}
+
+	/**
+	 * @return the model version at which the event last changed, or -1 if there
+	 *         is no such event
+	 */
+	public long getEventVersion(String name) {
+		return rm.getEventVersion(name);
+	}
+
+	/**
+	 * @return the number of changes of the waitlist of the event
+	 */
+	public long getWaitlistVersion(String eventName) {
+		return rm.getWaitlistVersion(eventName);
+	}
+
 	public List<Event> findAllEvents() {
-		return rm.getEvents();
+		return rm.getView().getEvents();
+	}
+
+	/**
+	 * @return the events from the day {@code from} to the day {@code to}, both
+	 *         included, sorted by date and start time; a null bound leaves the
+	 *         range open on that side
+	 */
+	public List<Event> findEventsBetween(Date from, Date to) throws InvalidInputException {
+		if (from != null && to != null && from.after(to))
+			throw new InvalidInputException("Range start cannot be after range end!");
+		return rm.getEventsBetween(from, to);
+	}
+
+	/**
+	 * Lists the participants one page at a time. A cursor stays valid when
+	 * entities are added or deleted: the next page starts after the last
+	 * participant of the previous one, even if that participant was deleted.
+	 * Once the model is loaded again, e.g. after a restart, a cursor continues
+	 * after its participant if it still exists, and has expired otherwise.
+	 *
+	 * @param sort
+	 *            "created" (the default) for the order the participants were
+	 *            created in, or "name"
+	 * @param after
+	 *            the cursor returned with the previous page, or null for the first
+	 *            page
+	 * @param limit
+	 *            number of participants per page, from 1 to
+	 *            {@link #MAX_PAGE_SIZE}
+	 */
+	public Page<Participant> findParticipants(String sort, String after, int limit) throws InvalidInputException {
+		checkLimit(limit);
+		if (sort == null || sort.equals(CREATED)) {
+			long epoch = rm.getParticipantsEpoch();
+			long seq = after == null ? -1 : parseSeq(after, epoch, rm::getParticipantSeq);
+			return page(CREATED, rm.getParticipantsAddedAfter(seq), limit,
+					(last, p) -> createdKey(epoch, last, p.getName()));
+		} else if (sort.equals(NAME)) {
+			return page(NAME, rm.getParticipantsNamedAfter(after == null ? null : decodeCursor(NAME, after)), limit,
+					(last, p) -> last);
+		}
+		throw new InvalidInputException("Participants cannot be sorted by " + sort + "!");
+	}
+
+	/**
+	 * Lists the events one page at a time, like
+	 * {@link #findParticipants(String, String, int)}. Events in a range of days
+	 * are sorted by date.
+	 *
+	 * @param sort
+	 *            "created" (the default without a range), "name" or "date" for
+	 *            date, start time and name (the default with a range)
+	 */
+	public Page<Event> findEvents(String sort, Date from, Date to, String after, int limit)
+			throws InvalidInputException {
+		checkLimit(limit);
+		if (from != null || to != null) {
+			if (sort != null && !sort.equals(DATE))
+				throw new InvalidInputException("Events in a range of days can only be sorted by date!");
+			if (from != null && to != null && from.after(to))
+				throw new InvalidInputException("Range start cannot be after range end!");
+			sort = DATE;
+		}
+		if (sort == null || sort.equals(CREATED)) {
+			long epoch = rm.getEventsEpoch();
+			long seq = after == null ? -1 : parseSeq(after, epoch, rm::getEventSeq);
+			return page(CREATED, rm.getEventsAddedAfter(seq), limit, (last, e) -> createdKey(epoch, last, e.getName()));
+		} else if (sort.equals(NAME)) {
+			return page(NAME, rm.getEventsNamedAfter(after == null ? null : decodeCursor(NAME, after)), limit,
+					(last, e) -> last);
+		} else if (sort.equals(DATE)) {
+			return pageByDate(rm.getEventsBetween(from, to, after == null ? null : parseEvent(after)), limit);
+		}
+		throw new InvalidInputException("Events cannot be sorted by " + sort + "!");
+	}
+
+	private static void checkLimit(int limit) throws InvalidInputException {
+		if (limit < 1 || limit > MAX_PAGE_SIZE)
+			throw new InvalidInputException("Limit must be between 1 and " + MAX_PAGE_SIZE + "!");
+	}
+
+	// Reads one entry past the page to know whether there is a next one. The
+	// cursor holds what the key function makes of the last entry of the page.
+	private static <K, V> Page<V> page(String sort, NavigableMap<K, V> sorted, int limit,
+			BiFunction<K, V, String> key) {
+		List<V> items = new ArrayList<>();
+		Map.Entry<K, V> last = null;
+		for (Map.Entry<K, V> entry : sorted.entrySet()) {
+			if (items.size() == limit)
+				return new Page<>(items, encodeCursor(sort, key.apply(last.getKey(), last.getValue())));
+			items.add(entry.getValue());
+			last = entry;
+		}
+		return new Page<>(items, null);
+	}
+
+	// Sequence numbers start over when the model is loaded again, so a cursor in
+	// creation order also holds the numbering of its sequence number and the
+	// name of the entity, to find the entity in another numbering
+	private static String createdKey(long epoch, long seq, String name) {
+		return epoch + ":" + seq + ":" + (name == null ? "" : name);
+	}
+
+	private static Page<Event> pageByDate(Collection<Event> sorted, int limit) {
+		List<Event> items = new ArrayList<>();
+		Iterator<Event> events = sorted.iterator();
+		while (items.size() < limit && events.hasNext())
+			items.add(events.next());
+		if (!events.hasNext())
+			return new Page<>(items, null);
+		Event last = items.get(items.size() - 1);
+		return new Page<>(items, encodeCursor(DATE, millis(last.getEventDate()) + ":" + millis(last.getStartTime()) + ":"
+				+ (last.getName() == null ? "" : last.getName())));
+	}
+
+	private static String millis(java.util.Date date) {
+		return date == null ? "" : String.valueOf(date.getTime());
+	}
+
+	// Cursors are opaque to clients: the sort order and the sort key of the last
+	// entity of the page, in URL-safe base64
+	private static String encodeCursor(String sort, String key) {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((sort + ":" + key).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String decodeCursor(String sort, String cursor) throws InvalidInputException {
+		String decoded;
+		try {
+			decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidInputException("Invalid cursor!");
+		}
+		if (!decoded.startsWith(sort + ":"))
+			throw new InvalidInputException("Invalid cursor!");
+		return decoded.substring(sort.length() + 1);
+	}
+
+	// The sequence number to continue after. A cursor of another numbering
+	// continues after its entity, which can not be found any more once it was
+	// deleted.
+	private static long parseSeq(String cursor, long epoch, ToLongFunction<String> seqOfName)
+			throws InvalidInputException {
+		String[] key = decodeCursor(CREATED, cursor).split(":", 3);
+		if (key.length != 3)
+			throw new InvalidInputException("Invalid cursor!");
+		try {
+			if (Long.parseLong(key[0]) == epoch)
+				return Long.parseLong(key[1]);
+		} catch (NumberFormatException e) {
+			throw new InvalidInputException("Invalid cursor!");
+		}
+		long seq = seqOfName.applyAsLong(key[2]);
+		if (seq < 0)
+			throw new InvalidInputException("Cursor has expired!");
+		return seq;
+	}
+
+	// An event with the date, start time and name of the last event of the page,
+	// which only serves as the position to continue from
+	private static Event parseEvent(String cursor) throws InvalidInputException {
+		String[] key = decodeCursor(DATE, cursor).split(":", 3);
+		if (key.length != 3)
+			throw new InvalidInputException("Invalid cursor!");
+		try {
+			return new Event(key[2], key[0].isEmpty() ? null : new Date(Long.parseLong(key[0])),
+					key[1].isEmpty() ? null : new Time(Long.parseLong(key[1])), null);
+		} catch (NumberFormatException e) {
+			throw new InvalidInputException("Invalid cursor!");
+		}
 	}
 
 	public List<Participant> findAllParticipants() {
-		return rm.getParticipants();
+		return rm.getView().getParticipants();
+	}
+
+	public List<Registration> findAllRegistrations() {
+		return rm.getView().getRegistrations();
+	}
+
+	/**
+	 * @return the events of each participant that has registrations in the view,
+	 *         in the order they were registered, so that they agree with the
+	 *         participants of the same view
+	 */
+	public Map<Participant, List<Event>> getEventsByParticipant(ModelView view) {
+		Map<Participant, List<Event>> events = new IdentityHashMap<>();
+		for (Registration r : view.getRegistrations())
+			events.computeIfAbsent(r.getParticipant(), p -> new ArrayList<>()).add(r.getEvent());
+		return events;
 	}
 
 	public List<Event> getEventsForParticipant(Participant p) {
 		List<Event> events = new ArrayList<>();
-		for (Registration r : rm.getRegistrations()) {
-			if (r.getParticipant().getName().contentEquals(p.getName()))
-				events.add(r.getEvent());
-		}
+		for (Registration r : rm.getRegistrationsOfParticipant(p.getName()))
+			events.add(r.getEvent());
 
 		return events;
 	}
 
+	/**
+	 * @return the events of the participant that overlap another one of their
+	 *         events, sorted by start
+	 */
+	public List<Event> findConflicts(Participant p) {
+		return rm.getConflictingEvents(p.getName());
+	}
+
+	public List<Participant> getParticipantsForEvent(Event e) {
+		List<Participant> participants = new ArrayList<>();
+		for (Registration r : rm.getRegistrationsOfEvent(e.getName()))
+			participants.add(r.getParticipant());
+
+		return participants;
+	}
+
 	public Participant findParticipant(String name) throws InvalidInputException {
-		Participant p = null;
-		for(Participant tmp: rm.getParticipants()) {
-			if(tmp.getName().contentEquals(name)) {
-				p = tmp;
-				break;
-			}
-		}
-		
+		Participant p = rm.getParticipant(name);
 		if (p == null)
 			throw new InvalidInputException("Participant was not found");
 		return p;
 	}
 
 	public Event findEvent(String name) throws InvalidInputException {
-		Event e = null;
-		for(Event tmp: rm.getEvents()) {
-			if(tmp.getName().contentEquals(name)) {
-				e = tmp;
-				break;
-			}
-		}
-		
+		Event e = rm.getEvent(name);
 		if (e == null)
 			throw new InvalidInputException("Event was not found");
 		return e;
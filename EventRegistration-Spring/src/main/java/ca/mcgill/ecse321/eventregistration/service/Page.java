@@ -0,0 +1,30 @@
+package ca.mcgill.ecse321.eventregistration.service;
+
+import java.util.List;
+
+/**
+ * One page of a list, with the cursor that continues it.
+ */
+public class Page<T> {
+
+	private final List<T> items;
+	private final String next;
+
+	Page(List<T> items, String next) {
+		this.items = items;
+		this.next = next;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * @return the cursor to pass to get the next page, or null if this is the
+	 *         last page
+	 */
+	public String getNext() {
+		return next;
+	}
+
+}
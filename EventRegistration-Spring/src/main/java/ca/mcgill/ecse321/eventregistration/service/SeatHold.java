@@ -0,0 +1,50 @@
+package ca.mcgill.ecse321.eventregistration.service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+
+/**
+ * A seat of an event taken for a participant until they confirm the
+ * registration, release the seat or the hold expires. Holds are kept in memory
+ * only.
+ */
+public class SeatHold {
+
+	private final long id;
+	private final Participant participant;
+	private final Event event;
+	private final long expiresAt;
+	volatile TimingWheel.Timeout<SeatHold> timeout;
+	// set once the seat is released or taken over by a registration
+	final AtomicBoolean settled = new AtomicBoolean();
+
+	SeatHold(long id, Participant participant, Event event, long expiresAt) {
+		this.id = id;
+		this.participant = participant;
+		this.event = event;
+		this.expiresAt = expiresAt;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public Participant getParticipant() {
+		return participant;
+	}
+
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return the time in milliseconds since the epoch after which the seat is
+	 *         released
+	 */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+}
@@ -0,0 +1,204 @@
+package ca.mcgill.ecse321.eventregistration.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import ca.mcgill.ecse321.eventregistration.persistence.RegistrationRepository;
+
+/**
+ * Applies all mutations of the model on one thread. Request threads submit
+ * commands to a bounded queue and wait for their result; the writer takes
+ * whatever has queued up, applies the commands in order, persists the whole
+ * batch in one repository transaction and only then completes the commands.
+ * Request threads never contend for the model locks, and a burst of writes
+ * costs one commit instead of one per mutation. If the commit fails, or
+ * processing the batch throws, every command of the batch fails, the
+ * repository discards the batch and the writer goes on with the next batch.
+ */
+public class SingleWriter {
+
+	/**
+	 * Changes the model and returns the entity to persist.
+	 */
+	public interface Mutation<T> {
+		T apply() throws InvalidInputException;
+	}
+
+	/**
+	 * Stores the entity returned by a mutation.
+	 */
+	public interface Persistence<T> {
+		/**
+		 * @return whether the entity was stored
+		 */
+		boolean save(T applied);
+	}
+
+	/**
+	 * Message of the exception thrown when a change was applied to the model but
+	 * the repository could not store it.
+	 */
+	static final String NOT_SAVED = "The change could not be saved";
+
+	private static class Command<T> {
+		final Mutation<T> mutation;
+		final Persistence<T> persistence;
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		T applied;
+		Throwable failure;
+
+		Command(Mutation<T> mutation, Persistence<T> persistence) {
+			this.mutation = mutation;
+			this.persistence = persistence;
+		}
+
+		void apply() {
+			try {
+				applied = mutation.apply();
+			} catch (InvalidInputException | RuntimeException e) {
+				failure = e;
+			}
+		}
+
+		void persist() {
+			if (failure != null)
+				return;
+			try {
+				if (!persistence.save(applied))
+					failure = new InvalidInputException(NOT_SAVED);
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+		}
+
+		// the batch was applied but could not be made durable
+		void notCommitted() {
+			if (failure == null)
+				failure = new InvalidInputException(NOT_SAVED);
+		}
+
+		void complete() {
+			if (failure == null)
+				result.complete(applied);
+			else
+				result.completeExceptionally(failure);
+		}
+	}
+
+	// queued by close(), the writer stops once it reaches it
+	private static final Command<Void> STOP = new Command<>(null, null);
+
+	private final RegistrationRepository repository;
+	private final BlockingQueue<Command<?>> queue;
+	private final int maxBatchSize;
+	private final Thread thread;
+	private volatile boolean closed;
+
+	/**
+	 * @param capacity
+	 *            the number of commands that may wait for the writer; further
+	 *            submissions block until there is room
+	 */
+	public SingleWriter(RegistrationRepository repository, int capacity) {
+		this.repository = repository;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.maxBatchSize = capacity;
+		this.thread = new Thread(this::run, "registration-writer");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Queues a mutation and waits until it has been applied and persisted.
+	 */
+	public <T> T execute(Mutation<T> mutation, Persistence<T> persistence) throws InvalidInputException {
+		try {
+			return submit(mutation, persistence).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the writer", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof InvalidInputException)
+				throw (InvalidInputException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	public <T> CompletableFuture<T> submit(Mutation<T> mutation, Persistence<T> persistence) throws InterruptedException {
+		if (closed)
+			throw new IllegalStateException("The writer is closed");
+		Command<T> command = new Command<>(mutation, persistence);
+		queue.put(command);
+		return command.result;
+	}
+
+	private void run() {
+		List<Command<?>> batch = new ArrayList<>(maxBatchSize);
+		boolean stopped = false;
+		while (!stopped) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				break;
+			}
+			queue.drainTo(batch, maxBatchSize - 1);
+			stopped = batch.remove(STOP);
+			try {
+				process(batch);
+			} catch (Throwable t) {
+				// fails the commands of the batch that are not complete yet, later
+				// batches are processed as usual
+				for (Command<?> command : batch)
+					command.result.completeExceptionally(t);
+			}
+			batch.clear();
+		}
+		IllegalStateException closedException = new IllegalStateException("The writer is closed");
+		for (Command<?> command : queue)
+			command.result.completeExceptionally(closedException);
+	}
+
+	private void process(List<Command<?>> batch) {
+		for (Command<?> command : batch)
+			command.apply();
+		repository.beginBatch();
+		try {
+			for (Command<?> command : batch)
+				command.persist();
+		} catch (Throwable t) {
+			repository.rollbackBatch();
+			throw t;
+		}
+		boolean committed = repository.commitBatch();
+		for (Command<?> command : batch) {
+			if (!committed)
+				command.notCommitted();
+			command.complete();
+		}
+	}
+
+	/**
+	 * Applies the commands queued so far and stops the writer. Commands submitted
+	 * concurrently may fail.
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			queue.put(STOP);
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+package ca.mcgill.ecse321.eventregistration.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Expires items after a delay with a hashed timing wheel: a ring of buckets,
+ * one per tick, that a single thread walks one bucket per tick. An item is put
+ * in the bucket of its deadline, together with the number of full turns of the
+ * wheel left until then, so scheduling and cancelling take constant time and
+ * each tick only looks at the items of one bucket. Deadlines are rounded up to
+ * the next tick.
+ *
+ * Threads schedule into a lock-free queue that the wheel thread moves into the
+ * buckets. Cancelled items stay in their bucket until the wheel reaches it.
+ */
+class TimingWheel<T> {
+
+	/**
+	 * An item scheduled to expire.
+	 */
+	static final class Timeout<T> {
+		final T item;
+		final long deadline;
+		private long rounds;
+		private volatile boolean cancelled;
+
+		private Timeout(T item, long deadline) {
+			this.item = item;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * The item does not expire, unless it has expired already.
+		 */
+		void cancel() {
+			cancelled = true;
+		}
+	}
+
+	private final long tickMillis;
+	private final ArrayDeque<Timeout<T>>[] buckets;
+	private final long start;
+	private final Consumer<T> expiry;
+	private final ConcurrentLinkedQueue<Timeout<T>> scheduled = new ConcurrentLinkedQueue<>();
+	// the next tick the wheel processes, counted from start
+	private long tick;
+	private Thread thread;
+
+	/**
+	 * @param ticksPerWheel
+	 *            number of buckets; items that expire within one turn of the wheel
+	 *            are looked at only once
+	 * @param expiry
+	 *            called on the wheel thread with each item whose deadline passed
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	TimingWheel(long tickMillis, int ticksPerWheel, long start, Consumer<T> expiry) {
+		if (tickMillis < 1 || ticksPerWheel < 1)
+			throw new IllegalArgumentException("The tick and the number of ticks per wheel must be positive");
+		this.tickMillis = tickMillis;
+		this.buckets = new ArrayDeque[ticksPerWheel];
+		for (int i = 0; i < ticksPerWheel; i++)
+			buckets[i] = new ArrayDeque<>();
+		this.start = start;
+		this.expiry = expiry;
+	}
+
+	/**
+	 * @param now
+	 *            the current time in milliseconds, on the clock passed to
+	 *            {@link #advance(long)}
+	 */
+	Timeout<T> schedule(T item, long now, long delayMillis) {
+		long deadline = now + delayMillis;
+		Timeout<T> timeout = new Timeout<>(item, deadline);
+		scheduled.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Processes every tick up to the given time and expires the items whose
+	 * deadline has passed.
+	 */
+	void advance(long now) {
+		List<T> expired = new ArrayList<>();
+		synchronized (this) {
+			long last = Math.floorDiv(now - start, tickMillis);
+			for (; tick <= last; tick++) {
+				transferScheduled();
+				ArrayDeque<Timeout<T>> bucket = buckets[(int) Math.floorMod(tick, (long) buckets.length)];
+				for (int i = bucket.size(); i > 0; i--) {
+					Timeout<T> timeout = bucket.poll();
+					if (timeout.cancelled)
+						continue;
+					if (timeout.rounds > 0) {
+						timeout.rounds--;
+						bucket.add(timeout);
+					} else {
+						expired.add(timeout.item);
+					}
+				}
+			}
+		}
+		for (T item : expired)
+			expiry.accept(item);
+	}
+
+	private void transferScheduled() {
+		Timeout<T> timeout;
+		while ((timeout = scheduled.poll()) != null) {
+			if (timeout.cancelled)
+				continue;
+			// rounded up, and never before the tick being processed
+			long deadlineTick = Math.max(tick, Math.floorDiv(timeout.deadline - start + tickMillis - 1, tickMillis));
+			timeout.rounds = (deadlineTick - tick) / buckets.length;
+			buckets[(int) Math.floorMod(deadlineTick, (long) buckets.length)].add(timeout);
+		}
+	}
+
+	/**
+	 * Starts a daemon thread that advances the wheel to the current time once per
+	 * tick.
+	 */
+	synchronized void start(String name) {
+		if (thread != null)
+			return;
+		thread = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					long now = System.currentTimeMillis();
+					Thread.sleep(tickMillis - Math.floorMod(now - start, tickMillis));
+				} catch (InterruptedException e) {
+					break;
+				}
+				try {
+					advance(System.currentTimeMillis());
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	synchronized void stop() {
+		if (thread != null)
+			thread.interrupt();
+		thread = null;
+	}
+
+}
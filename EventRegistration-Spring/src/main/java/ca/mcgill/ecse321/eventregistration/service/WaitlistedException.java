@@ -0,0 +1,21 @@
+package ca.mcgill.ecse321.eventregistration.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a participant could not be registered because the event is full
+ * and was put on its waitlist instead. The waitlist is best effort: it is kept
+ * in memory only and lost when the application restarts, and a participant
+ * whose events overlap the event when a seat comes up may be skipped.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class WaitlistedException extends InvalidInputException {
+
+	private static final long serialVersionUID = 4127035624413098552L;
+
+	public WaitlistedException(String errorMessage) {
+		super(errorMessage);
+	}
+
+}
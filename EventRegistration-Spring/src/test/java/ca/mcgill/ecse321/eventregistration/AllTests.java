@@ -4,11 +4,15 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import ca.mcgill.ecse321.eventregistration.controller.TestEventRegistrationRestController;
+import ca.mcgill.ecse321.eventregistration.controller.TestResponseCache;
+import ca.mcgill.ecse321.eventregistration.model.TestPublishedList;
 import ca.mcgill.ecse321.eventregistration.persistenece.TestPersistence;
 import ca.mcgill.ecse321.eventregistration.service.TestEventRegistrationService;
 
 @RunWith(Suite.class)
-@SuiteClasses({ TestEventRegistrationService.class, TestPersistence.class })
+@SuiteClasses({ TestEventRegistrationService.class, TestPersistence.class, TestResponseCache.class,
+		TestEventRegistrationRestController.class, TestPublishedList.class })
 public class AllTests {
 
 }
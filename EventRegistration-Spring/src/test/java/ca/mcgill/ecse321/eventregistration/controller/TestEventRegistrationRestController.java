@@ -0,0 +1,174 @@
+package ca.mcgill.ecse321.eventregistration.controller;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Date;
+import java.sql.Time;
+import java.util.Calendar;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import ca.mcgill.ecse321.eventregistration.EventRegistrationSpringApplication;
+import ca.mcgill.ecse321.eventregistration.controller.configuration.ExportProperties;
+import ca.mcgill.ecse321.eventregistration.dto.DtoMapper;
+import ca.mcgill.ecse321.eventregistration.dto.EventDto;
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
+import ca.mcgill.ecse321.eventregistration.persistence.PersistenceXStream;
+import ca.mcgill.ecse321.eventregistration.service.EventRegistrationService;
+import ca.mcgill.ecse321.eventregistration.service.InvalidInputException;
+
+public class TestEventRegistrationRestController {
+
+	private RegistrationManager rm;
+	private EventRegistrationService service;
+	private EventRegistrationRestController controller;
+	private MockMvc mvc;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		PersistenceXStream.initializeModelManager("output" + File.separator + "data.xml");
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		rm = new RegistrationManager();
+		service = new EventRegistrationService(rm);
+
+		// participants with no, one and two events, and an event nobody attends
+		Calendar c = Calendar.getInstance();
+		c.set(2017, Calendar.MARCH, 16, 9, 0, 0);
+		Date date = new Date(c.getTimeInMillis());
+		Time startTime = new Time(c.getTimeInMillis());
+		c.set(2017, Calendar.MARCH, 16, 10, 30, 0);
+		Time endTime = new Time(c.getTimeInMillis());
+		Event concert = service.createEvent("Concert", date, startTime, endTime);
+		Event talk = service.createEvent("Talk", date, startTime, endTime, 20);
+		service.createEvent("Workshop été", date, startTime, endTime);
+		Participant martin = service.createParticipant("Martin");
+		Participant jennifer = service.createParticipant("Jennifer");
+		service.createParticipant("Oscar");
+		service.register(martin, concert);
+		service.register(jennifer, concert);
+		service.register(jennifer, talk);
+
+		controller = new EventRegistrationRestController();
+		ReflectionTestUtils.setField(controller, "service", service);
+		ReflectionTestUtils.setField(controller, "dtoMapper",
+				new DtoMapper(new EventRegistrationSpringApplication().modelMapper()));
+		ReflectionTestUtils.setField(controller, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+		ReflectionTestUtils.setField(controller, "responseCache", new ResponseCache(16, 1 << 20));
+		ReflectionTestUtils.setField(controller, "exportProperties", new ExportProperties());
+		mvc = MockMvcBuilders.standaloneSetup(controller).build();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		rm.delete();
+	}
+
+	@Test
+	public void testExportEvents() throws Exception {
+		checkExport("/export/events", "/events?limit=" + EventRegistrationService.MAX_PAGE_SIZE);
+	}
+
+	@Test
+	public void testExportParticipants() throws Exception {
+		checkExport("/export/participants", "/participants?limit=" + EventRegistrationService.MAX_PAGE_SIZE);
+	}
+
+	@Test
+	public void testExportParticipantsDuringChanges() throws Exception {
+		String before = mvc.perform(get("/export/participants")).andReturn().getResponse().getContentAsString();
+
+		// the registrations change while the first participant is written
+		Participant jennifer = service.findParticipant("Jennifer");
+		Participant oscar = service.findParticipant("Oscar");
+		Event concert = service.findEvent("Concert");
+		Event talk = service.findEvent("Talk");
+		AtomicBoolean changed = new AtomicBoolean();
+		ReflectionTestUtils.setField(controller, "dtoMapper",
+				new DtoMapper(new EventRegistrationSpringApplication().modelMapper()) {
+					@Override
+					public EventDto map(Event e) {
+						if (changed.compareAndSet(false, true)) {
+							try {
+								service.unregister(jennifer, talk);
+								service.register(oscar, concert);
+							} catch (InvalidInputException ex) {
+								throw new IllegalStateException(ex);
+							}
+						}
+						return super.map(e);
+					}
+				});
+		String during = mvc.perform(get("/export/participants")).andReturn().getResponse().getContentAsString();
+		assertTrue(changed.get());
+		assertEquals(before, during);
+
+		String after = mvc.perform(get("/export/participants")).andReturn().getResponse().getContentAsString();
+		assertNotEquals(before, after);
+		assertEquals(mvc.perform(get("/participants?limit=" + EventRegistrationService.MAX_PAGE_SIZE)).andReturn()
+				.getResponse().getContentAsString(), after);
+	}
+
+	// The export is the same JSON as the whole list in one page, gzipped or not,
+	// and the two encodings have their own ETags
+	private void checkExport(String export, String paged) throws Exception {
+		byte[] expected = mvc.perform(get(paged)).andReturn().getResponse().getContentAsByteArray();
+		assertTrue(new String(expected, "UTF-8").startsWith("[{\"name\":"));
+
+		MockHttpServletResponse plain = mvc.perform(get(export)).andReturn().getResponse();
+		assertEquals(200, plain.getStatus());
+		assertNull(plain.getHeader(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(new String(expected, "UTF-8"), plain.getContentAsString());
+
+		MockHttpServletResponse gzipped = mvc.perform(get(export).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+				.andReturn().getResponse();
+		assertEquals(200, gzipped.getStatus());
+		assertEquals("gzip", gzipped.getHeader(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(new String(expected, "UTF-8"), new String(gunzip(gzipped.getContentAsByteArray()), "UTF-8"));
+
+		String plainEtag = plain.getHeader(HttpHeaders.ETAG);
+		String gzipEtag = gzipped.getHeader(HttpHeaders.ETAG);
+		assertNotNull(plainEtag);
+		assertNotNull(gzipEtag);
+		assertNotEquals(plainEtag, gzipEtag);
+
+		// each ETag only matches its own encoding
+		assertEquals(304, mvc.perform(get(export).header(HttpHeaders.IF_NONE_MATCH, plainEtag)).andReturn()
+				.getResponse().getStatus());
+		assertEquals(200, mvc.perform(get(export).header(HttpHeaders.IF_NONE_MATCH, plainEtag)
+				.header(HttpHeaders.ACCEPT_ENCODING, "gzip")).andReturn().getResponse().getStatus());
+	}
+
+	private static byte[] gunzip(byte[] gzipped) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,92 @@
+package ca.mcgill.ecse321.eventregistration.controller;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+public class TestResponseCache {
+
+	// one byte keys count 130 bytes besides the body
+	private static final int BODY = 100;
+	private static final long ENTRY = BODY + 130;
+
+	private static ResponseCache.Entry entry(long version) {
+		return new ResponseCache.Entry(version, new HttpHeaders(), new byte[BODY]);
+	}
+
+	@Test
+	public void testEvictsByBytes() {
+		ResponseCache cache = new ResponseCache(100, 3 * ENTRY);
+		cache.put("a", entry(1));
+		cache.put("b", entry(1));
+		cache.put("c", entry(1));
+		assertEquals(3, cache.size());
+
+		cache.put("d", entry(1));
+		assertEquals(3, cache.size());
+		assertNull(cache.get("a", 1));
+		assertNotNull(cache.get("b", 1));
+		assertNotNull(cache.get("c", 1));
+		assertNotNull(cache.get("d", 1));
+
+		// a larger body makes room by evicting as many entries as needed
+		cache.put("e", new ResponseCache.Entry(1, new HttpHeaders(), new byte[2 * BODY + 130]));
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("d", 1));
+		assertNotNull(cache.get("e", 1));
+	}
+
+	@Test
+	public void testEvictsByEntries() {
+		ResponseCache cache = new ResponseCache(2, Long.MAX_VALUE);
+		cache.put("a", entry(1));
+		cache.put("b", entry(1));
+		cache.put("c", entry(1));
+		assertEquals(2, cache.size());
+		assertNull(cache.get("a", 1));
+	}
+
+	@Test
+	public void testReadPromotesEntry() {
+		ResponseCache cache = new ResponseCache(100, 3 * ENTRY);
+		cache.put("a", entry(1));
+		cache.put("b", entry(1));
+		cache.put("c", entry(1));
+
+		// reading a makes b the least recently used entry
+		assertNotNull(cache.get("a", 1));
+		cache.put("d", entry(1));
+		assertNotNull(cache.get("a", 1));
+		assertNull(cache.get("b", 1));
+		assertNotNull(cache.get("c", 1));
+		assertNotNull(cache.get("d", 1));
+	}
+
+	@Test
+	public void testStaleVersionMisses() {
+		ResponseCache cache = new ResponseCache(100, 3 * ENTRY);
+		ResponseCache.Entry first = entry(1);
+		cache.put("a", first);
+		assertSame(first, cache.get("a", 1));
+		assertNull(cache.get("a", 2));
+
+		// replacing the entry does not count it twice
+		ResponseCache.Entry second = entry(2);
+		cache.put("a", second);
+		assertNull(cache.get("a", 1));
+		assertSame(second, cache.get("a", 2));
+		cache.put("b", entry(2));
+		cache.put("c", entry(2));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testSkipsEntriesLargerThanCache() {
+		ResponseCache cache = new ResponseCache(100, ENTRY - 1);
+		cache.put("a", entry(1));
+		assertEquals(0, cache.size());
+		assertNull(cache.get("a", 1));
+	}
+
+}
@@ -0,0 +1,94 @@
+package ca.mcgill.ecse321.eventregistration.dto;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.modelmapper.ModelMapper;
+
+import ca.mcgill.ecse321.eventregistration.EventRegistrationSpringApplication;
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+
+/**
+ * Compares the cost of converting events and participants to DTOs with the
+ * ModelMapper bean and with {@link DtoMapper}, after checking that both give
+ * the same DTOs. Not a unit test, run it with
+ * {@code java ... DtoMapperBenchmark [entities] [rounds]}.
+ */
+public class DtoMapperBenchmark {
+
+	public static void main(String[] args) {
+		int entities = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		ModelMapper modelMapper = new EventRegistrationSpringApplication().modelMapper();
+		DtoMapper dtoMapper = new DtoMapper(modelMapper);
+
+		List<Event> events = new ArrayList<>(entities);
+		List<Participant> participants = new ArrayList<>(entities);
+		for (int i = 0; i < entities; i++) {
+			Event e = new Event("Event " + i, Date.valueOf("2018-01-01"), Time.valueOf("09:00:00"),
+					Time.valueOf("17:00:00"));
+			e.setCapacity(i);
+			events.add(e);
+			participants.add(new Participant("Participant " + i));
+		}
+
+		for (int i = 0; i < entities; i++) {
+			if (!same(modelMapper.map(events.get(i), EventDto.class), dtoMapper.map(events.get(i)))
+					|| !same(modelMapper.map(participants.get(i), ParticipantDto.class),
+							dtoMapper.map(participants.get(i))))
+				throw new AssertionError("The mappers disagree on entity " + i);
+		}
+
+		// the first half of the rounds warms up the JIT
+		long reflective = 0;
+		long direct = 0;
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < entities; i++) {
+				consume(modelMapper.map(events.get(i), EventDto.class));
+				consume(modelMapper.map(participants.get(i), ParticipantDto.class));
+			}
+			long middle = System.nanoTime();
+			for (int i = 0; i < entities; i++) {
+				consume(dtoMapper.map(events.get(i)));
+				consume(dtoMapper.map(participants.get(i)));
+			}
+			long end = System.nanoTime();
+			if (round >= rounds / 2) {
+				reflective += middle - start;
+				direct += end - middle;
+			}
+		}
+		long conversions = 2L * entities * (rounds - rounds / 2);
+		report("modelmapper", reflective, conversions);
+		report("direct", direct, conversions);
+		System.out.printf("speedup %.1fx (%d)%n", (double) reflective / direct, sink);
+	}
+
+	private static int sink;
+
+	// keeps the JIT from removing conversions whose result is unused
+	private static void consume(Object dto) {
+		sink += System.identityHashCode(dto) & 1;
+	}
+
+	private static boolean same(EventDto a, EventDto b) {
+		return a.getName().equals(b.getName()) && a.getEventDate().equals(b.getEventDate())
+				&& a.getStartTime().equals(b.getStartTime()) && a.getEndTime().equals(b.getEndTime())
+				&& a.getCapacity() == b.getCapacity();
+	}
+
+	private static boolean same(ParticipantDto a, ParticipantDto b) {
+		return a.getName().equals(b.getName()) && a.getEvents() == null && b.getEvents() == null;
+	}
+
+	private static void report(String name, long nanos, long conversions) {
+		System.out.printf("%-12s %10d conversions  %8.1f ms  %8.1f ns/conversion%n", name, conversions, nanos / 1e6,
+				(double) nanos / conversions);
+	}
+
+}
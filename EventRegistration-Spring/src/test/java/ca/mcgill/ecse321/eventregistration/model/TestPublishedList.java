@@ -0,0 +1,84 @@
+package ca.mcgill.ecse321.eventregistration.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestPublishedList {
+
+	@Test
+	public void testAgainstArrayList() {
+		Random random = new Random(7);
+		List<Object> expected = new ArrayList<>();
+		PublishedList<Object> list = PublishedList.empty();
+		for (int i = 0; i < 5000; i++) {
+			if (!expected.isEmpty() && random.nextInt(3) == 0) {
+				Set<Object> removed = new HashSet<>();
+				for (int j = random.nextInt(4); j >= 0; j--)
+					removed.add(expected.get(random.nextInt(expected.size())));
+				expected.removeAll(removed);
+				list = list.removeAll(removed);
+			} else {
+				Object e = new Object();
+				expected.add(e);
+				list = list.append(e);
+			}
+			if (random.nextInt(50) == 0) {
+				assertEquals(expected, list);
+				assertEquals(expected, new ArrayList<>(list));
+			}
+		}
+		assertEquals(expected, list);
+		assertEquals(expected, PublishedList.of(expected));
+	}
+
+	@Test
+	public void testListsAreImmutable() {
+		Object a = new Object();
+		Object b = new Object();
+		PublishedList<Object> ab = PublishedList.empty().append(a).append(b);
+		PublishedList<Object> abc = ab.append(new Object());
+		PublishedList<Object> abd = ab.append(new Object());
+		PublishedList<Object> b2 = ab.removeAll(Collections.singleton(a));
+
+		assertEquals(2, ab.size());
+		assertSame(a, ab.get(0));
+		assertSame(b, ab.get(1));
+		assertNotSame(abc.get(2), abd.get(2));
+		assertEquals(Collections.singletonList(b), b2);
+		// removing what the list does not contain returns it unchanged
+		assertSame(b2, b2.removeAll(Collections.singleton(a)));
+		assertSame(abd, abd.removeAll(Collections.singleton(abc.get(2))));
+	}
+
+	@Test
+	public void testRemovalCostDoesNotGrowLinearly() {
+		// a change copies one path of the tree, so its cost is bound by the height
+		PublishedList<Object> small = listOf(1 << 10);
+		PublishedList<Object> large = listOf(1 << 17);
+		assertTrue(small.height() <= 4 * 10);
+		assertTrue(large.height() <= 4 * 17);
+
+		// and stays bound while elements are removed from the front
+		List<Object> front = new ArrayList<>(large.subList(0, 1 << 16));
+		for (Object e : front)
+			large = large.removeAll(Collections.singleton(e));
+		assertEquals(1 << 16, large.size());
+		assertTrue(large.height() <= 4 * 16);
+	}
+
+	private static PublishedList<Object> listOf(int size) {
+		PublishedList<Object> list = PublishedList.empty();
+		for (int i = 0; i < size; i++)
+			list = list.append(new Object());
+		return list;
+	}
+
+}
@@ -0,0 +1,62 @@
+package ca.mcgill.ecse321.eventregistration.persistenece;
+
+import java.io.File;
+import java.sql.Date;
+import java.sql.Time;
+
+import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.Participant;
+import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
+import ca.mcgill.ecse321.eventregistration.persistence.JdbcRegistrationRepository;
+import ca.mcgill.ecse321.eventregistration.persistence.PersistenceXStream;
+import ca.mcgill.ecse321.eventregistration.persistence.RegistrationRepository;
+import ca.mcgill.ecse321.eventregistration.persistence.XStreamRegistrationRepository;
+import ca.mcgill.ecse321.eventregistration.service.EventRegistrationService;
+
+/**
+ * Compares the cost of creating and registering participants with the
+ * available persistence backends. Not a unit test, run it with
+ * {@code java ... RepositoryBenchmark [participants]}.
+ */
+public class RepositoryBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int participants = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		new File("output").mkdirs();
+
+		delete("output/bench.xml", "output/bench.xml.log");
+		report("xstream", participants, new XStreamRegistrationRepository("output/bench.xml"));
+
+		delete("output/bench-wal.xml", "output/bench-wal.xml.log");
+		PersistenceXStream.enableWriteAheadLog(10000);
+		report("xstream + write-ahead log", participants, new XStreamRegistrationRepository("output/bench-wal.xml"));
+		PersistenceXStream.disableWriteAheadLog();
+
+		delete("output/bench-h2.mv.db");
+		JdbcRegistrationRepository h2 = new JdbcRegistrationRepository("jdbc:h2:file:./output/bench-h2");
+		report("h2", participants, h2);
+		h2.close();
+	}
+
+	private static void report(String name, int participants, RegistrationRepository repository) throws Exception {
+		RegistrationManager rm = repository.load();
+		EventRegistrationService service = new EventRegistrationService(rm, repository);
+		Event event = service.createEvent("Benchmark", Date.valueOf("2018-01-01"), Time.valueOf("09:00:00"),
+				Time.valueOf("17:00:00"));
+
+		long start = System.nanoTime();
+		for (int i = 0; i < participants; i++) {
+			Participant p = service.createParticipant("Participant " + i);
+			service.register(p, event);
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("%-28s %6d participants  %8.1f ms  %8.1f us/write%n", name, participants, elapsed / 1e6,
+				elapsed / 1e3 / (2 * participants));
+	}
+
+	private static void delete(String... fileNames) {
+		for (String fileName : fileNames)
+			new File(fileName).delete();
+	}
+
+}
@@ -7,15 +7,38 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.sql.Date;
 import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.IdAllocator;
 import ca.mcgill.ecse321.eventregistration.model.Participant;
 import ca.mcgill.ecse321.eventregistration.model.Registration;
 import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
+import ca.mcgill.ecse321.eventregistration.persistence.Durability;
+import ca.mcgill.ecse321.eventregistration.persistence.JdbcRegistrationRepository;
 import ca.mcgill.ecse321.eventregistration.persistence.PersistenceXStream;
+import ca.mcgill.ecse321.eventregistration.persistence.SnapshotFormat;
+import ca.mcgill.ecse321.eventregistration.persistence.XStreamRegistrationRepository;
+import ca.mcgill.ecse321.eventregistration.service.EventRegistrationService;
+import ca.mcgill.ecse321.eventregistration.service.InvalidInputException;
+import ca.mcgill.ecse321.eventregistration.service.SingleWriter;
+import ca.mcgill.ecse321.eventregistration.service.WaitlistedException;
 
 public class TestPersistence {
 	private RegistrationManager rm;
@@ -97,4 +120,556 @@ public class TestPersistence {
 	    assertEquals(rm.getParticipant(1), rm.getRegistration(1).getParticipant());
 	}
 
+	@Test
+	public void testBinarySnapshot() throws IOException {
+		String xmlFileName = "output" + File.separator + "data.xml";
+		String binaryFileName = "output" + File.separator + "data.bin";
+		String convertedFileName = "output" + File.separator + "converted.xml";
+		PersistenceXStream.initializeModelManager(xmlFileName);
+		assertTrue(PersistenceXStream.saveToXMLwithXStream(rm));
+
+		assertTrue(PersistenceXStream.convertToBinary(xmlFileName, binaryFileName));
+		assertTrue(new File(binaryFileName).length() < new File(xmlFileName).length());
+		assertTrue(PersistenceXStream.convertToXML(binaryFileName, convertedFileName));
+
+		// loading detects the format of the snapshot
+		checkLoaded(PersistenceXStream.initializeModelManager(binaryFileName));
+		checkLoaded(PersistenceXStream.initializeModelManager(convertedFileName));
+
+		// a truncated snapshot is reported instead of loading part of the model
+		String truncatedFileName = "output" + File.separator + "truncated.bin";
+		byte[] bytes = Files.readAllBytes(new File(binaryFileName).toPath());
+		Files.write(new File(truncatedFileName).toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+		assertFalse(PersistenceXStream.convertToXML(truncatedFileName, convertedFileName));
+
+		// saving uses the configured format
+		PersistenceXStream.setSnapshotFormat(SnapshotFormat.BINARY);
+		try {
+			new File(binaryFileName).delete();
+			PersistenceXStream.initializeModelManager(binaryFileName);
+			assertTrue(PersistenceXStream.saveSnapshot(rm));
+			checkLoaded(PersistenceXStream.loadSnapshot());
+		} finally {
+			PersistenceXStream.setSnapshotFormat(SnapshotFormat.XML);
+		}
+	}
+
+	@Test
+	public void testBinarySnapshotNames() {
+		String binaryFileName = "output" + File.separator + "names.bin";
+		new File(binaryFileName).delete();
+		PersistenceXStream.setSnapshotFormat(SnapshotFormat.BINARY);
+		try {
+			RegistrationManager namesRm = PersistenceXStream.initializeModelManager(binaryFileName);
+			namesRm.addParticipant(new Participant("Zo\u00eb \u65e5\u672c"));
+			namesRm.addParticipant(new Participant("nul\u0000byte"));
+			namesRm.addParticipant(new Participant(""));
+			assertTrue(PersistenceXStream.saveSnapshot(namesRm));
+		} finally {
+			PersistenceXStream.setSnapshotFormat(SnapshotFormat.XML);
+		}
+		RegistrationManager loaded = PersistenceXStream.loadSnapshot();
+		assertEquals(3, loaded.getParticipants().size());
+		assertEquals("Zo\u00eb \u65e5\u672c", loaded.getParticipant(0).getName());
+		assertEquals("nul\u0000byte", loaded.getParticipant(1).getName());
+		assertEquals("", loaded.getParticipant(2).getName());
+	}
+
+	private void checkLoaded(RegistrationManager loaded) {
+		assertEquals(2, loaded.getParticipants().size());
+		assertEquals("Martin", loaded.getParticipant(0).getName());
+		assertEquals("Jennifer", loaded.getParticipant(1).getName());
+		assertEquals(1, loaded.getEvents().size());
+		assertEquals(rm.getEvent(0).getEventDate().toString(), loaded.getEvent(0).getEventDate().toString());
+		assertEquals(rm.getEvent(0).getStartTime().toString(), loaded.getEvent(0).getStartTime().toString());
+		assertEquals(rm.getEvent(0).getEndTime().toString(), loaded.getEvent(0).getEndTime().toString());
+		assertEquals(2, loaded.getRegistrations().size());
+		assertEquals(loaded.getParticipant(0), loaded.getRegistration(0).getParticipant());
+		assertEquals(loaded.getParticipant(1), loaded.getRegistration(1).getParticipant());
+		assertEquals(loaded.getEvent(0), loaded.getRegistration(1).getEvent());
+		// name indexes are rebuilt for the loaded model
+		assertEquals(loaded.getParticipant(1), loaded.getParticipant("Jennifer"));
+		assertEquals(loaded.getEvent(0), loaded.getEvent(rm.getEvent(0).getName()));
+		assertEquals(2, loaded.getRegistrationsOfEvent(rm.getEvent(0).getName()).size());
+		assertEquals(loaded.getRegistration(1), loaded.getRegistration("Jennifer", rm.getEvent(0).getName()));
+	}
+
+	@Test
+	public void testWriteAheadLog() throws InvalidInputException {
+		String fileName = "output" + File.separator + "wal.xml";
+		new File(fileName).delete();
+		new File(fileName + ".log").delete();
+		PersistenceXStream.enableWriteAheadLog(100);
+		try {
+			RegistrationManager walRm = PersistenceXStream.initializeModelManager(fileName);
+			EventRegistrationService erc = new EventRegistrationService(walRm);
+			Participant p = erc.createParticipant("Martin");
+			Event e = erc.createEvent("Concert", rm.getEvent(0).getEventDate(), rm.getEvent(0).getStartTime(),
+					rm.getEvent(0).getEndTime());
+			erc.register(p, e);
+
+			// the snapshot is untouched, the mutations are in the log
+			assertTrue(new File(fileName + ".log").length() > 0);
+			assertEquals(0, ((RegistrationManager) PersistenceXStream.loadFromXMLwithXStream()).getParticipants().size());
+
+			// restart: snapshot plus log tail
+			walRm = PersistenceXStream.initializeModelManager(fileName);
+			checkReplayed(walRm);
+
+			assertEquals(3, PersistenceXStream.getSnapshotLag());
+
+			// compaction folds the log into the snapshot
+			assertTrue(PersistenceXStream.compact());
+			assertEquals(0, PersistenceXStream.getSnapshotLag());
+			assertEquals(0, new File(fileName + ".log").length());
+			assertFalse(new File(fileName + ".log.prev").exists());
+			checkReplayed((RegistrationManager) PersistenceXStream.loadFromXMLwithXStream());
+			checkReplayed(PersistenceXStream.initializeModelManager(fileName));
+		} finally {
+			PersistenceXStream.disableWriteAheadLog();
+		}
+	}
+
+	@Test
+	public void testJdbcRepository() throws Exception {
+		String url = "jdbc:h2:file:./output/jdbc-test";
+		new File("output" + File.separator + "jdbc-test.mv.db").delete();
+		JdbcRegistrationRepository repository = new JdbcRegistrationRepository(url);
+		try {
+			RegistrationManager jdbcRm = repository.load();
+			EventRegistrationService erc = new EventRegistrationService(jdbcRm, repository);
+			Participant p = erc.createParticipant("Martin");
+			erc.createParticipant("Jennifer");
+			Event e = erc.createEvent("Concert", rm.getEvent(0).getEventDate(), rm.getEvent(0).getStartTime(),
+					rm.getEvent(0).getEndTime());
+			erc.register(p, e);
+			erc.register(erc.findParticipant("Jennifer"), e);
+		} finally {
+			repository.close();
+		}
+
+		repository = new JdbcRegistrationRepository(url);
+		try {
+			checkLoaded(repository.load());
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Test
+	public void testCapacityAndUnregister() throws Exception {
+		String fileName = "output" + File.separator + "seats.xml";
+		new File(fileName).delete();
+		new File(fileName + ".log").delete();
+		PersistenceXStream.enableWriteAheadLog(100);
+		try {
+			RegistrationManager walRm = PersistenceXStream.initializeModelManager(fileName);
+			register(new EventRegistrationService(walRm));
+			checkUnregistered(PersistenceXStream.initializeModelManager(fileName));
+			assertTrue(PersistenceXStream.compact());
+		} finally {
+			PersistenceXStream.disableWriteAheadLog();
+		}
+		checkUnregistered(PersistenceXStream.initializeModelManager(fileName));
+
+		String url = "jdbc:h2:file:./output/jdbc-seats";
+		new File("output" + File.separator + "jdbc-seats.mv.db").delete();
+		JdbcRegistrationRepository repository = new JdbcRegistrationRepository(url);
+		try {
+			register(new EventRegistrationService(repository.load(), repository));
+		} finally {
+			repository.close();
+		}
+		repository = new JdbcRegistrationRepository(url);
+		try {
+			checkUnregistered(repository.load());
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Test
+	public void testDeletions() throws Exception {
+		String fileName = "output" + File.separator + "deletions.xml";
+		new File(fileName).delete();
+		new File(fileName + ".log").delete();
+		PersistenceXStream.enableWriteAheadLog(100);
+		try {
+			delete(new EventRegistrationService(PersistenceXStream.initializeModelManager(fileName)));
+			checkDeleted(PersistenceXStream.initializeModelManager(fileName));
+		} finally {
+			PersistenceXStream.disableWriteAheadLog();
+		}
+
+		String url = "jdbc:h2:file:./output/jdbc-deletions";
+		new File("output" + File.separator + "jdbc-deletions.mv.db").delete();
+		JdbcRegistrationRepository repository = new JdbcRegistrationRepository(url);
+		try {
+			delete(new EventRegistrationService(repository.load(), repository));
+		} finally {
+			repository.close();
+		}
+		repository = new JdbcRegistrationRepository(url);
+		try {
+			checkDeleted(repository.load());
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Test
+	public void testConcurrentRecreateReplays() throws Exception {
+		String fileName = "output" + File.separator + "recreate.xml";
+		new File(fileName).delete();
+		new File(fileName + ".log").delete();
+		PersistenceXStream.enableWriteAheadLog(100000);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			RegistrationManager walRm = PersistenceXStream.initializeModelManager(fileName);
+			// mutations take a while to reach the log
+			EventRegistrationService erc = new EventRegistrationService(walRm, new XStreamRegistrationRepository(fileName) {
+				@Override
+				public boolean saveParticipant(RegistrationManager rm, Participant p) {
+					pause();
+					return super.saveParticipant(rm, p);
+				}
+
+				@Override
+				public boolean deleteParticipant(RegistrationManager rm, Participant p) {
+					pause();
+					return super.deleteParticipant(rm, p);
+				}
+
+				private void pause() {
+					try {
+						Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			// threads delete and re-create the same participants at the same time
+			List<Future<?>> results = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				results.add(pool.submit(() -> {
+					for (int i = 0; i < 400; i++) {
+						String name = "Participant " + (i % 200);
+						try {
+							if (walRm.getParticipant(name) == null)
+								erc.createParticipant(name);
+							else
+								erc.deleteParticipant(walRm.getParticipant(name));
+						} catch (InvalidInputException raced) {
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> result : results)
+				result.get();
+
+			List<String> expected = new ArrayList<>();
+			for (Participant p : walRm.getParticipants())
+				expected.add(p.getName());
+			List<String> replayed = new ArrayList<>();
+			for (Participant p : PersistenceXStream.initializeModelManager(fileName).getParticipants())
+				replayed.add(p.getName());
+			assertEquals(expected, replayed);
+		} finally {
+			pool.shutdown();
+			PersistenceXStream.disableWriteAheadLog();
+		}
+	}
+
+	private void delete(EventRegistrationService erc) throws InvalidInputException {
+		Participant martin = erc.createParticipant("Martin");
+		Participant jennifer = erc.createParticipant("Jennifer");
+		Event concert = erc.createEvent("Concert", rm.getEvent(0).getEventDate(), rm.getEvent(0).getStartTime(),
+				rm.getEvent(0).getEndTime());
+		Event opera = erc.createEvent("Opera", rm.getEvent(0).getEventDate(), rm.getEvent(0).getStartTime(),
+				rm.getEvent(0).getEndTime());
+		erc.register(martin, concert);
+		erc.register(martin, opera);
+		erc.register(jennifer, concert);
+		erc.register(jennifer, opera);
+		erc.deleteParticipant(martin);
+		erc.deleteEvent(opera);
+	}
+
+	private void checkDeleted(RegistrationManager loaded) {
+		assertEquals(1, loaded.getParticipants().size());
+		assertEquals("Jennifer", loaded.getParticipant(0).getName());
+		assertEquals(1, loaded.getEvents().size());
+		assertEquals("Concert", loaded.getEvent(0).getName());
+		assertEquals(1, loaded.getRegistrations().size());
+		assertEquals("Jennifer", loaded.getRegistration(0).getParticipant().getName());
+		assertEquals("Concert", loaded.getRegistration(0).getEvent().getName());
+	}
+
+	// Martin gets the only seat, Jennifer takes it over when Martin unregisters
+	private void register(EventRegistrationService erc) throws InvalidInputException {
+		Participant martin = erc.createParticipant("Martin");
+		Participant jennifer = erc.createParticipant("Jennifer");
+		Event e = erc.createEvent("Concert", rm.getEvent(0).getEventDate(), rm.getEvent(0).getStartTime(),
+				rm.getEvent(0).getEndTime(), 1);
+		erc.register(martin, e);
+		try {
+			erc.register(jennifer, e);
+			fail();
+		} catch (WaitlistedException ex) {
+			assertEquals(1, erc.getWaitlist(e).size());
+		}
+		erc.unregister(martin, e);
+	}
+
+	private void checkUnregistered(RegistrationManager loaded) {
+		assertEquals(1, loaded.getEvent("Concert").getCapacity());
+		assertEquals(1, loaded.getRegistrations().size());
+		assertEquals("Jennifer", loaded.getRegistration(0).getParticipant().getName());
+		assertEquals(1, loaded.getSeatsTaken("Concert"));
+	}
+
+	@Test
+	public void testSnapshotsAreNotReordered() throws Exception {
+		String fileName = "output" + File.separator + "reordered.bin";
+		new File(fileName).delete();
+		PersistenceXStream.setSnapshotFormat(SnapshotFormat.BINARY);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			RegistrationManager model = PersistenceXStream.initializeModelManager(fileName);
+			// the event stops the next snapshot while it is being written
+			CountDownLatch writing = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			AtomicBoolean armed = new AtomicBoolean();
+			Event template = rm.getEvent(0);
+			model.addEvent(new Event("Slow", template.getEventDate(), template.getStartTime(), template.getEndTime()) {
+				@Override
+				public String getName() {
+					if (armed.compareAndSet(true, false)) {
+						writing.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+					return super.getName();
+				}
+			});
+			model.addParticipant(new Participant("First"));
+			armed.set(true);
+			Future<Boolean> older = pool.submit(() -> PersistenceXStream.saveSnapshot(model));
+			writing.await();
+			model.addParticipant(new Participant("Second"));
+			Future<Boolean> newer = pool.submit(() -> PersistenceXStream.saveSnapshot(model));
+			// gives the newer snapshot time to be moved into place first
+			try {
+				newer.get(500, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+			}
+			release.countDown();
+			assertTrue(older.get());
+			assertTrue(newer.get());
+		} finally {
+			pool.shutdown();
+			PersistenceXStream.setSnapshotFormat(SnapshotFormat.XML);
+		}
+
+		// the older snapshot did not replace the newer one
+		RegistrationManager loaded = PersistenceXStream.loadSnapshot();
+		assertNotNull(loaded.getParticipant("First"));
+		assertNotNull(loaded.getParticipant("Second"));
+	}
+
+	@Test
+	public void testJdbcRepositoryImport() throws Exception {
+		String xmlFileName = "output" + File.separator + "data.xml";
+		PersistenceXStream.initializeModelManager(xmlFileName);
+		assertTrue(PersistenceXStream.saveToXMLwithXStream(rm));
+
+		new File("output" + File.separator + "jdbc-import.mv.db").delete();
+		JdbcRegistrationRepository repository = new JdbcRegistrationRepository("jdbc:h2:file:./output/jdbc-import");
+		repository.setImportFilename(xmlFileName);
+		try {
+			checkLoaded(repository.load());
+			// the second load reads the imported rows
+			repository.setImportFilename(null);
+			checkLoaded(repository.load());
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		String fileName = "output" + File.separator + "group.xml";
+		new File(fileName).delete();
+		new File(fileName + ".log").delete();
+		PersistenceXStream.enableWriteAheadLog(100000);
+		PersistenceXStream.setDurability(Durability.GROUP, 1);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			RegistrationManager groupRm = PersistenceXStream.initializeModelManager(fileName);
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				Participant p = new Participant("Participant " + i);
+				results.add(pool.submit(() -> PersistenceXStream.persistParticipant(groupRm, p)));
+			}
+			for (Future<Boolean> result : results)
+				assertTrue(result.get());
+
+			// every acknowledged record has to survive a restart
+			PersistenceXStream.setDurability(Durability.SYNC, 0);
+			RegistrationManager reloaded = PersistenceXStream.initializeModelManager(fileName);
+			assertEquals(200, reloaded.getParticipants().size());
+		} finally {
+			pool.shutdown();
+			PersistenceXStream.setDurability(Durability.GROUP, 0);
+			PersistenceXStream.disableWriteAheadLog();
+		}
+	}
+
+	@Test
+	public void testSingleWriter() throws Exception {
+		String fileName = "output" + File.separator + "writer.xml";
+		new File(fileName).delete();
+		new File(fileName + ".log").delete();
+		PersistenceXStream.enableWriteAheadLog(100000);
+		XStreamRegistrationRepository repository = new XStreamRegistrationRepository(fileName);
+		SingleWriter writer = new SingleWriter(repository, 64);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			EventRegistrationService erc = new EventRegistrationService(repository.load(), repository);
+			erc.setWriter(writer);
+			List<Future<Participant>> results = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				String name = "Participant " + i;
+				results.add(pool.submit(() -> erc.createParticipant(name)));
+			}
+			for (Future<Participant> result : results)
+				assertNotNull(result.get());
+			try {
+				erc.createParticipant("Participant 0");
+				fail();
+			} catch (InvalidInputException e) {
+				assertEquals("Participant name already exists", e.getMessage());
+			}
+
+			RegistrationManager reloaded = PersistenceXStream.initializeModelManager(fileName);
+			assertEquals(200, reloaded.getParticipants().size());
+		} finally {
+			pool.shutdown();
+			writer.close();
+			PersistenceXStream.disableWriteAheadLog();
+		}
+	}
+
+	@Test
+	public void testFailedBatchIsRolledBack() throws Exception {
+		String url = "jdbc:h2:file:./output/jdbc-rollback";
+		new File("output" + File.separator + "jdbc-rollback.mv.db").delete();
+		JdbcRegistrationRepository repository = new JdbcRegistrationRepository(url);
+		SingleWriter writer = new SingleWriter(repository, 64);
+		try {
+			// holds the writer so that the next two commands end up in one batch
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			Future<Participant> first = writer.submit(() -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				return new Participant("First");
+			}, p -> repository.saveParticipant(null, p));
+			started.await();
+			Future<Participant> lost = writer.submit(() -> new Participant("Lost"),
+					p -> repository.saveParticipant(null, p));
+			Future<Participant> failing = writer.submit(() -> new Participant("Failing"), p -> {
+				throw new AssertionError("Persisting failed");
+			});
+			release.countDown();
+			assertNotNull(first.get());
+			for (Future<Participant> result : Arrays.asList(lost, failing)) {
+				try {
+					result.get();
+					fail();
+				} catch (ExecutionException e) {
+					assertEquals("Persisting failed", e.getCause().getMessage());
+				}
+			}
+			assertNotNull(writer.execute(() -> new Participant("Next"), p -> repository.saveParticipant(null, p)));
+		} finally {
+			writer.close();
+			repository.close();
+		}
+
+		// the batch that failed left nothing behind for the next one to commit
+		JdbcRegistrationRepository reopened = new JdbcRegistrationRepository(url);
+		try {
+			RegistrationManager reloaded = reopened.load();
+			assertNotNull(reloaded.getParticipant("First"));
+			assertNull(reloaded.getParticipant("Lost"));
+			assertNull(reloaded.getParticipant("Failing"));
+			assertNotNull(reloaded.getParticipant("Next"));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void testSnapshotBatch() {
+		String fileName = "output" + File.separator + "batch.xml";
+		new File(fileName).delete();
+		RegistrationManager batchRm = PersistenceXStream.initializeModelManager(fileName);
+		PersistenceXStream.beginBatch();
+		for (Participant p : rm.getParticipants()) {
+			batchRm.addParticipant(p);
+			assertTrue(PersistenceXStream.persistParticipant(batchRm, p));
+		}
+		// nothing is written before the batch is committed
+		assertEquals(0, PersistenceXStream.loadSnapshot().getParticipants().size());
+		assertTrue(PersistenceXStream.commitBatch());
+		assertEquals(2, PersistenceXStream.loadSnapshot().getParticipants().size());
+	}
+
+	@Test
+	public void testRegistrationIds() throws InvalidInputException {
+		String fileName = "output" + File.separator + "ids.bin";
+		new File(fileName).delete();
+		new File(fileName + ".ids").delete();
+		PersistenceXStream.setSnapshotFormat(SnapshotFormat.BINARY);
+		try {
+			RegistrationManager idsRm = PersistenceXStream.initializeModelManager(fileName);
+			XStreamRegistrationRepository repository = new XStreamRegistrationRepository(fileName);
+			Registration.getIdAllocator().setReservation(repository::reserveIds, 10);
+			EventRegistrationService erc = new EventRegistrationService(idsRm, repository);
+			Participant p = erc.createParticipant("Martin");
+			Event e = erc.createEvent("Concert", rm.getEvent(0).getEventDate(), rm.getEvent(0).getStartTime(),
+					rm.getEvent(0).getEndTime());
+			Registration r = erc.register(p, e);
+			assertTrue(new File(fileName + ".ids").exists());
+
+			// loaded registrations keep their ids, new ones are numbered behind the
+			// reserved block
+			RegistrationManager loaded = PersistenceXStream.initializeModelManager(fileName);
+			assertEquals(r.getId(), loaded.getRegistration(0).getId());
+			assertEquals(r.getId() + 10, Registration.getIdAllocator().peek());
+		} finally {
+			PersistenceXStream.setSnapshotFormat(SnapshotFormat.XML);
+			Registration.getIdAllocator().setReservation(null, IdAllocator.DEFAULT_BLOCK_SIZE);
+		}
+	}
+
+	private void checkReplayed(RegistrationManager walRm) {
+		assertEquals(1, walRm.getParticipants().size());
+		assertEquals("Martin", walRm.getParticipant(0).getName());
+		assertEquals(1, walRm.getEvents().size());
+		assertEquals(rm.getEvent(0).getStartTime().toString(), walRm.getEvent(0).getStartTime().toString());
+		assertEquals(1, walRm.getRegistrations().size());
+		assertEquals(walRm.getParticipant(0), walRm.getRegistration(0).getParticipant());
+		assertEquals(walRm.getEvent(0), walRm.getRegistration(0).getEvent());
+	}
+
 }
@@ -1,13 +1,25 @@
 package ca.mcgill.ecse321.eventregistration.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.sql.Date;
 import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -16,10 +28,12 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import ca.mcgill.ecse321.eventregistration.model.Event;
+import ca.mcgill.ecse321.eventregistration.model.ModelView;
 import ca.mcgill.ecse321.eventregistration.model.Participant;
 import ca.mcgill.ecse321.eventregistration.model.Registration;
 import ca.mcgill.ecse321.eventregistration.model.RegistrationManager;
 import ca.mcgill.ecse321.eventregistration.persistence.PersistenceXStream;
+import ca.mcgill.ecse321.eventregistration.persistence.RegistrationRepository;
 
 public class TestEventRegistrationService {
 
@@ -176,6 +190,508 @@ public class TestEventRegistrationService {
 	    assertEquals(1, rm.getParticipants().size());
 	    assertEquals(1, rm.getEvents().size());
 	}
+
+	@Test
+	public void testEventsAndParticipantsOfRegistrations() {
+	    Calendar c = Calendar.getInstance();
+	    c.set(2016, Calendar.OCTOBER, 16, 9, 00, 0);
+	    Date eventDate = new Date(c.getTimeInMillis());
+	    Time startTime = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 16, 10, 30, 0);
+	    Time endTime = new Time(c.getTimeInMillis());
+
+	    EventRegistrationService erc = new EventRegistrationService(rm);
+	    Participant oscar = null, jane = null;
+	    Event game = null, concert = null;
+	    try {
+	        oscar = erc.createParticipant("Oscar");
+	        jane = erc.createParticipant("Jane");
+	        game = erc.createEvent("Soccer Game", eventDate, startTime, endTime);
+	        concert = erc.createEvent("Concert", eventDate, startTime, endTime);
+	        erc.register(oscar, game);
+	        erc.register(oscar, concert);
+	        erc.register(jane, concert);
+	    } catch (InvalidInputException e) {
+	        fail();
+	    }
+
+	    assertEquals(Arrays.asList(game, concert), erc.getEventsForParticipant(oscar));
+	    assertEquals(Arrays.asList(concert), erc.getEventsForParticipant(jane));
+	    assertEquals(Arrays.asList(oscar), erc.getParticipantsForEvent(game));
+	    assertEquals(Arrays.asList(oscar, jane), erc.getParticipantsForEvent(concert));
+
+	    // removed registrations are dropped from both sides
+	    rm.removeRegistration(rm.getRegistration("Oscar", "Concert"));
+	    assertEquals(Arrays.asList(game), erc.getEventsForParticipant(oscar));
+	    assertEquals(Arrays.asList(jane), erc.getParticipantsForEvent(concert));
+	    try {
+	        erc.register(oscar, concert);
+	    } catch (InvalidInputException e) {
+	        fail();
+	    }
+	    assertEquals(3, rm.getRegistrations().size());
+	}
+
+	@Test
+	public void testConcurrentRegistrations() throws Exception {
+	    Calendar c = Calendar.getInstance();
+	    c.set(2016, Calendar.OCTOBER, 16, 9, 00, 0);
+	    Date eventDate = new Date(c.getTimeInMillis());
+	    Time startTime = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 16, 10, 30, 0);
+	    Time endTime = new Time(c.getTimeInMillis());
+
+	    EventRegistrationService erc = new EventRegistrationService(rm, new InMemoryRepository());
+	    int participants = 50, events = 20, threads = 8;
+	    for (int i = 0; i < participants; i++)
+	        erc.createParticipant("Participant " + i);
+	    for (int i = 0; i < events; i++)
+	        erc.createEvent("Event " + i, eventDate, startTime, endTime);
+
+	    // every thread tries to register every participant for every event
+	    ExecutorService executor = Executors.newFixedThreadPool(threads);
+	    CountDownLatch start = new CountDownLatch(1);
+	    AtomicInteger rejected = new AtomicInteger();
+	    List<Future<?>> results = new ArrayList<>();
+	    for (int t = 0; t < threads; t++) {
+	        int offset = t;
+	        results.add(executor.submit(() -> {
+	            start.await();
+	            for (int i = 0; i < participants * events; i++) {
+	                int pair = (i + offset * 7) % (participants * events);
+	                try {
+	                    erc.register(erc.findParticipant("Participant " + pair % participants),
+	                            erc.findEvent("Event " + pair / participants));
+	                } catch (InvalidInputException e) {
+	                    rejected.incrementAndGet();
+	                }
+	            }
+	            return null;
+	        }));
+	    }
+	    start.countDown();
+	    for (Future<?> result : results)
+	        result.get(60, TimeUnit.SECONDS);
+	    executor.shutdown();
+
+	    assertEquals(participants * events, rm.getRegistrations().size());
+	    assertEquals((threads - 1) * participants * events, rejected.get());
+	    for (Participant p : rm.getParticipants())
+	        assertEquals(events, erc.getEventsForParticipant(p).size());
+	    for (Event e : rm.getEvents())
+	        assertEquals(participants, erc.getParticipantsForEvent(e).size());
+	}
+
+	@Test
+	public void testConcurrentCreateSameName() throws Exception {
+	    EventRegistrationService erc = new EventRegistrationService(rm, new InMemoryRepository());
+	    int threads = 8, names = 200;
+	    ExecutorService executor = Executors.newFixedThreadPool(threads);
+	    CountDownLatch start = new CountDownLatch(1);
+	    AtomicInteger created = new AtomicInteger();
+	    List<Future<?>> results = new ArrayList<>();
+	    for (int t = 0; t < threads; t++) {
+	        results.add(executor.submit(() -> {
+	            start.await();
+	            for (int i = 0; i < names; i++) {
+	                try {
+	                    erc.createParticipant("Participant " + i);
+	                    created.incrementAndGet();
+	                } catch (InvalidInputException e) {
+	                    assertEquals("Participant name already exists", e.getMessage());
+	                }
+	            }
+	            return null;
+	        }));
+	    }
+	    start.countDown();
+	    for (Future<?> result : results)
+	        result.get(60, TimeUnit.SECONDS);
+	    executor.shutdown();
+
+	    // exactly one participant per name
+	    assertEquals(names, created.get());
+	    assertEquals(names, rm.getParticipants().size());
+	    for (Participant p : rm.getParticipants())
+	        assertEquals(p, erc.findParticipant(p.getName()));
+	}
+
+	@Test
+	public void testFlashCrowd() throws Exception {
+	    EventRegistrationService erc = new EventRegistrationService(rm, new InMemoryRepository());
+	    int seats = 50, participants = 500, threads = 16;
+	    Event gig = erc.createEvent("Gig", new Date(0), new Time(0), new Time(3600000), seats);
+	    for (int i = 0; i < participants; i++)
+	        erc.createParticipant("Participant " + i);
+
+	    ExecutorService executor = Executors.newFixedThreadPool(threads);
+	    CountDownLatch start = new CountDownLatch(1);
+	    AtomicInteger waitlisted = new AtomicInteger();
+	    List<Future<?>> results = new ArrayList<>();
+	    for (int i = 0; i < participants; i++) {
+	        String name = "Participant " + i;
+	        results.add(executor.submit(() -> {
+	            start.await();
+	            try {
+	                erc.register(erc.findParticipant(name), gig);
+	            } catch (WaitlistedException e) {
+	                waitlisted.incrementAndGet();
+	            }
+	            return null;
+	        }));
+	    }
+	    start.countDown();
+	    for (Future<?> result : results)
+	        result.get(60, TimeUnit.SECONDS);
+	    executor.shutdown();
+
+	    // exactly as many registrations as seats, everybody else is waiting
+	    assertEquals(seats, rm.getRegistrations().size());
+	    assertEquals(seats, rm.getSeatsTaken("Gig"));
+	    assertEquals(participants - seats, waitlisted.get());
+	    List<Participant> waitlist = erc.getWaitlist(gig);
+	    assertEquals(participants - seats, waitlist.size());
+	    for (Participant p : waitlist)
+	        assertEquals(null, rm.getRegistration(p.getName(), "Gig"));
+
+	    // freed seats go to the participants waiting longest
+	    List<Registration> registered = new ArrayList<>(rm.getRegistrations());
+	    for (int i = 0; i < 10; i++) {
+	        erc.unregister(registered.get(i).getParticipant(), gig);
+	        assertEquals(null, rm.getRegistration(registered.get(i).getParticipant().getName(), "Gig"));
+	        assertEquals(waitlist.get(i), rm.getRegistration(waitlist.get(i).getName(), "Gig").getParticipant());
+	    }
+	    assertEquals(seats, rm.getRegistrations().size());
+	    assertEquals(seats, rm.getSeatsTaken("Gig"));
+	    assertEquals(waitlist.subList(10, waitlist.size()), erc.getWaitlist(gig));
+
+	    // leaving the waitlist frees no seat
+	    erc.unregister(waitlist.get(10), gig);
+	    assertEquals(participants - seats - 11, erc.getWaitlist(gig).size());
+	    assertEquals(seats, rm.getRegistrations().size());
+
+	    String error = null;
+	    try {
+	        erc.register(waitlist.get(11), gig);
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Participant " + waitlist.get(11).getName() + " is already on the waitlist for Gig", error);
+	}
+
+	@Test
+	public void testSeatHolds() throws Exception {
+	    EventRegistrationService erc = new EventRegistrationService(rm, new InMemoryRepository());
+	    Event gig = erc.createEvent("Gig", new Date(0), new Time(0), new Time(3600000), 2);
+	    Participant ann = erc.createParticipant("Ann");
+	    Participant bob = erc.createParticipant("Bob");
+	    Participant cid = erc.createParticipant("Cid");
+
+	    SeatHold annHold = erc.hold(ann, gig, 10);
+	    SeatHold bobHold = erc.hold(bob, gig, 10);
+	    assertEquals(2, rm.getSeatsTaken("Gig"));
+	    assertEquals(0, rm.getRegistrations().size());
+	    String error = null;
+	    try {
+	        erc.hold(cid, gig, 10);
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Event Gig has no free seat to hold", error);
+	    try {
+	        erc.register(cid, gig);
+	        fail();
+	    } catch (WaitlistedException e) {
+	        assertEquals(Arrays.asList(cid), erc.getWaitlist(gig));
+	    }
+
+	    // confirming registers on the held seat
+	    Registration r = erc.confirm(annHold.getId());
+	    assertEquals(ann, r.getParticipant());
+	    assertEquals(2, rm.getSeatsTaken("Gig"));
+	    error = null;
+	    try {
+	        erc.confirm(annHold.getId());
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Seat hold " + annHold.getId() + " does not exist or has expired", error);
+
+	    // a released seat goes to the waitlist
+	    erc.release(bobHold.getId());
+	    assertEquals(cid, rm.getRegistration("Cid", "Gig").getParticipant());
+	    assertEquals(0, erc.getWaitlist(gig).size());
+
+	    // an expired hold releases its seat
+	    erc.unregister(cid, gig);
+	    SeatHold expiring = erc.hold(bob, gig, 5);
+	    erc.expireHolds(expiring.getExpiresAt() - 60000);
+	    assertEquals(1, erc.getHoldCount());
+	    erc.expireHolds(expiring.getExpiresAt() + 1000);
+	    assertEquals(0, erc.getHoldCount());
+	    assertEquals(1, rm.getSeatsTaken("Gig"));
+	    error = null;
+	    try {
+	        erc.confirm(expiring.getId());
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Seat hold " + expiring.getId() + " does not exist or has expired", error);
+	}
+
+	@Test
+	public void testTimingWheel() {
+	    long tick = 100;
+	    List<Long> expiredAt = new ArrayList<>();
+	    // the current and the previous time the wheel was advanced to
+	    long[] now = new long[2];
+	    // 64 buckets of 100 ms, so many deadlines take more than one turn
+	    TimingWheel<Long> wheel = new TimingWheel<>(tick, 64, 0, deadline -> {
+	        // expired once its tick has passed, and not at an earlier advance
+	        assertTrue(deadline <= now[0]);
+	        assertTrue((deadline + tick - 1) / tick * tick > now[1]);
+	        expiredAt.add(deadline);
+	    });
+	    Random random = new Random(7);
+	    int count = 100000, cancelled = 0;
+	    for (int i = 0; i < count; i++) {
+	        long delay = random.nextInt(20000);
+	        TimingWheel.Timeout<Long> timeout = wheel.schedule(now[0] + delay, now[0], delay);
+	        if (i % 10 == 0) {
+	            timeout.cancel();
+	            cancelled++;
+	        }
+	        if (i % 1000 == 0) {
+	            now[1] = now[0];
+	            now[0] += 37;
+	            wheel.advance(now[0]);
+	        }
+	    }
+	    while (expiredAt.size() < count - cancelled && now[0] < 100000) {
+	        now[1] = now[0];
+	        now[0] += 50;
+	        wheel.advance(now[0]);
+	    }
+	    assertEquals(count - cancelled, expiredAt.size());
+	}
+
+	@Test
+	public void testDeleteCascades() throws Exception {
+	    EventRegistrationService erc = new EventRegistrationService(rm, new InMemoryRepository());
+	    Event gig = erc.createEvent("Gig", new Date(0), new Time(0), new Time(3600000), 1);
+	    Event fair = erc.createEvent("Fair", new Date(86400000), new Time(0), new Time(3600000));
+	    Participant ann = erc.createParticipant("Ann");
+	    Participant bob = erc.createParticipant("Bob");
+	    Participant cid = erc.createParticipant("Cid");
+	    erc.register(ann, gig);
+	    erc.register(ann, fair);
+	    erc.register(bob, fair);
+	    try {
+	        erc.register(bob, gig);
+	        fail();
+	    } catch (WaitlistedException e) {
+	    }
+	    erc.register(cid, fair);
+	    erc.unregister(cid, fair);
+	    assertEquals(Arrays.asList(ann, bob), erc.getParticipantsForEvent(fair));
+
+	    // the seat of a deleted participant goes to the waitlist
+	    erc.deleteParticipant(ann);
+	    assertEquals(Arrays.asList(bob, cid), erc.findAllParticipants());
+	    assertEquals(2, erc.findAllRegistrations().size());
+	    assertEquals(Arrays.asList(bob), erc.getParticipantsForEvent(gig));
+	    assertEquals(Arrays.asList(bob), erc.getParticipantsForEvent(fair));
+	    assertEquals(0, erc.getEventsForParticipant(ann).size());
+	    assertEquals(1, rm.getSeatsTaken("Gig"));
+
+	    // deleting an event removes its registrations, and its waitlist
+	    try {
+	        erc.register(cid, gig);
+	        fail();
+	    } catch (WaitlistedException e) {
+	        assertEquals(Arrays.asList(cid), erc.getWaitlist(gig));
+	    }
+	    erc.deleteEvent(gig);
+	    assertEquals(Arrays.asList(fair), erc.findAllEvents());
+	    assertEquals(Arrays.asList(fair), erc.getEventsForParticipant(bob));
+	    assertEquals(1, erc.findAllRegistrations().size());
+	    assertEquals(0, erc.getWaitlist(gig).size());
+	    assertEquals(0, rm.getSeatsTaken("Gig"));
+
+	    // the names can be used again
+	    Participant newAnn = erc.createParticipant("Ann");
+	    Event newGig = erc.createEvent("Gig", new Date(0), new Time(0), new Time(3600000), 1);
+	    erc.register(newAnn, newGig);
+	    assertEquals(Arrays.asList(newGig), erc.getEventsForParticipant(newAnn));
+
+	    String error = null;
+	    try {
+	        erc.deleteParticipant(new Participant("Dan"));
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Participant was not found", error);
+	}
+
+	@Test
+	public void testRemovalsLeaveViewsConsistent() {
+	    // removals interleaved with additions, checked against a plain list
+	    Random random = new Random(11);
+	    List<Participant> expected = new ArrayList<>();
+	    for (int i = 0; i < 2000; i++) {
+	        if (!expected.isEmpty() && random.nextInt(3) == 0) {
+	            Participant p = expected.remove(random.nextInt(expected.size()));
+	            assertTrue(rm.removeParticipant(p));
+	        } else {
+	            Participant p = new Participant("Participant " + i);
+	            rm.addParticipant(p);
+	            expected.add(p);
+	        }
+	        if (random.nextInt(10) == 0)
+	            assertEquals(expected, rm.getView().getParticipants());
+	    }
+	    ModelView view = rm.getView();
+	    assertEquals(expected, view.getParticipants());
+	    assertEquals(rm.getVersion(), view.getVersion());
+	}
+
+	@Test
+	public void testConcurrentPublishing() throws Exception {
+	    ExecutorService executor = Executors.newFixedThreadPool(8);
+	    List<Future<?>> results = new ArrayList<>();
+	    long version = rm.getVersion();
+	    for (int t = 0; t < 8; t++) {
+	        int thread = t;
+	        results.add(executor.submit(() -> {
+	            for (int i = 0; i < 500; i++) {
+	                Participant p = new Participant("Participant " + thread + "-" + i);
+	                assertTrue(rm.addParticipant(p));
+	                assertTrue(rm.getView().getParticipants().contains(p));
+	                if (i % 2 == 0)
+	                    assertTrue(rm.removeParticipant(p));
+	            }
+	            return null;
+	        }));
+	    }
+	    for (Future<?> result : results)
+	        result.get();
+	    executor.shutdown();
+
+	    // every change was published exactly once
+	    ModelView view = rm.getView();
+	    assertEquals(version + 8 * 750, view.getVersion());
+	    assertEquals(8 * 250, view.getParticipants().size());
+	    assertEquals(new HashSet<>(rm.getParticipants()), new HashSet<>(view.getParticipants()));
+	}
+
+	// Keeps the model in memory only
+	private static class InMemoryRepository implements RegistrationRepository {
+	    @Override
+	    public RegistrationManager load() {
+	        return new RegistrationManager();
+	    }
+
+	    @Override
+	    public boolean saveParticipant(RegistrationManager rm, Participant p) {
+	        return true;
+	    }
+
+	    @Override
+	    public boolean saveEvent(RegistrationManager rm, Event e) {
+	        return true;
+	    }
+
+	    @Override
+	    public boolean saveRegistration(RegistrationManager rm, Registration r) {
+	        return true;
+	    }
+
+	    @Override
+	    public boolean deleteRegistration(RegistrationManager rm, Registration r) {
+	        return true;
+	    }
+
+	    @Override
+	    public boolean deleteParticipant(RegistrationManager rm, Participant p) {
+	        return true;
+	    }
+
+	    @Override
+	    public boolean deleteEvent(RegistrationManager rm, Event e) {
+	        return true;
+	    }
+
+	    @Override
+	    public boolean saveAll(RegistrationManager rm) {
+	        return true;
+	    }
+	}
+
+	@Test
+	public void testFailedSaveIsReported() {
+	    RegistrationRepository failing = new InMemoryRepository() {
+	        @Override
+	        public boolean saveParticipant(RegistrationManager rm, Participant p) {
+	            return false;
+	        }
+	    };
+	    String error = null;
+	    try {
+	        new EventRegistrationService(rm, failing).createParticipant("Oscar");
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals(SingleWriter.NOT_SAVED, error);
+
+	    // the same through the single writer
+	    SingleWriter writer = new SingleWriter(failing, 16);
+	    EventRegistrationService erc = new EventRegistrationService(rm, failing);
+	    erc.setWriter(writer);
+	    error = null;
+	    try {
+	        erc.createParticipant("Pia");
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    } finally {
+	        writer.close();
+	    }
+	    assertEquals(SingleWriter.NOT_SAVED, error);
+	}
+
+	@Test
+	public void testWriterSurvivesFailedBatches() throws Exception {
+	    AtomicBoolean commits = new AtomicBoolean();
+	    SingleWriter writer = new SingleWriter(new InMemoryRepository() {
+	        @Override
+	        public boolean commitBatch() {
+	            return commits.get();
+	        }
+	    }, 16);
+	    try {
+	        String error = null;
+	        try {
+	            writer.execute(() -> "applied", applied -> true);
+	        } catch (InvalidInputException e) {
+	            error = e.getMessage();
+	        }
+	        assertEquals(SingleWriter.NOT_SAVED, error);
+
+	        commits.set(true);
+	        Error thrown = null;
+	        try {
+	            writer.execute(() -> {
+	                throw new Error("broken");
+	            }, applied -> true);
+	        } catch (Error e) {
+	            thrown = e;
+	        }
+	        assertEquals("broken", thrown.getMessage());
+	        assertEquals("applied", writer.execute(() -> "applied", applied -> true));
+	    } finally {
+	        writer.close();
+	    }
+	}
+
 	@Test
 	public void testCreateParticipant() {
 		assertEquals(0, rm.getParticipants().size());
@@ -311,6 +827,452 @@ public class TestEventRegistrationService {
 	    }
 
 	}
+
+	@Test
+	public void testFindParticipantAfterRemove() {
+	    EventRegistrationService erc = new EventRegistrationService(rm);
+	    try {
+	        Participant p = erc.createParticipant("John Doe");
+	        assertEquals(p, erc.findParticipant("John Doe"));
+	        rm.removeParticipant(p);
+	    } catch (InvalidInputException e) {
+	        fail();
+	    }
+
+	    String error = null;
+	    try {
+	        erc.findParticipant("John Doe");
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Participant was not found", error);
+
+	    // the name can be used again
+	    try {
+	        erc.createParticipant("John Doe");
+	    } catch (InvalidInputException e) {
+	        fail();
+	    }
+	    assertEquals(1, rm.getParticipants().size());
+	}
+
+	@Test
+	public void testFindEventsBetween() {
+	    Calendar c = Calendar.getInstance();
+	    c.set(2016, Calendar.OCTOBER, 16, 9, 00, 0);
+	    c.set(Calendar.MILLISECOND, 0);
+	    Date day1 = new Date(c.getTimeInMillis());
+	    Time nine = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 16, 13, 00, 0);
+	    Time one = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 17, 0, 00, 0);
+	    Date day2 = new Date(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 18, 0, 00, 0);
+	    Date day3 = new Date(c.getTimeInMillis());
+
+	    EventRegistrationService erc = new EventRegistrationService(rm);
+	    Event lunch = null, breakfast = null, party = null, picnic = null;
+	    try {
+	        party = erc.createEvent("Party", day3, nine, one);
+	        lunch = erc.createEvent("Lunch", day1, one, one);
+	        breakfast = erc.createEvent("Breakfast", day1, nine, one);
+	        picnic = erc.createEvent("Picnic", day2, nine, one);
+
+	        assertEquals(Arrays.asList(breakfast, lunch, picnic), erc.findEventsBetween(day1, day2));
+	        assertEquals(Arrays.asList(picnic, party), erc.findEventsBetween(day2, null));
+	        assertEquals(Arrays.asList(breakfast, lunch), erc.findEventsBetween(null, day1));
+	        assertEquals(Arrays.asList(breakfast, lunch, picnic, party), erc.findEventsBetween(null, null));
+
+	        rm.removeEvent(picnic);
+	        assertEquals(0, erc.findEventsBetween(day2, day2).size());
+	    } catch (InvalidInputException e) {
+	        fail();
+	    }
+
+	    String error = null;
+	    try {
+	        erc.findEventsBetween(day3, day1);
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Range start cannot be after range end!", error);
+	}
+
+	@Test
+	public void testPagination() {
+	    Calendar c = Calendar.getInstance();
+	    c.set(2016, Calendar.OCTOBER, 16, 9, 00, 0);
+	    c.set(Calendar.MILLISECOND, 0);
+	    Date day1 = new Date(c.getTimeInMillis());
+	    Time nine = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 16, 13, 00, 0);
+	    Time one = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 17, 0, 00, 0);
+	    Date day2 = new Date(c.getTimeInMillis());
+
+	    EventRegistrationService erc = new EventRegistrationService(rm);
+	    try {
+	        Participant cid = erc.createParticipant("Cid");
+	        Participant ann = erc.createParticipant("Ann");
+	        Participant bob = erc.createParticipant("Bob");
+	        Participant dan = erc.createParticipant("Dan");
+
+	        Page<Participant> page = erc.findParticipants(null, null, 2);
+	        assertEquals(Arrays.asList(cid, ann), page.getItems());
+	        // the cursor still works after its participant is deleted and others are
+	        // added
+	        erc.deleteParticipant(ann);
+	        Participant eve = erc.createParticipant("Eve");
+	        page = erc.findParticipants(null, page.getNext(), 2);
+	        assertEquals(Arrays.asList(bob, dan), page.getItems());
+	        page = erc.findParticipants("created", page.getNext(), 2);
+	        assertEquals(Arrays.asList(eve), page.getItems());
+	        assertEquals(null, page.getNext());
+
+	        page = erc.findParticipants("name", null, 2);
+	        assertEquals(Arrays.asList(bob, cid), page.getItems());
+	        page = erc.findParticipants("name", page.getNext(), 2);
+	        assertEquals(Arrays.asList(dan, eve), page.getItems());
+	        assertEquals(null, page.getNext());
+
+	        Event picnic = erc.createEvent("Picnic", day2, nine, one);
+	        Event lunch = erc.createEvent("Lunch", day1, one, one);
+	        Event breakfast = erc.createEvent("Breakfast", day1, nine, one);
+	        Page<Event> events = erc.findEvents(null, null, null, null, 2);
+	        assertEquals(Arrays.asList(picnic, lunch), events.getItems());
+	        assertEquals(Arrays.asList(breakfast), erc.findEvents(null, null, null, events.getNext(), 2).getItems());
+	        events = erc.findEvents("date", null, null, null, 1);
+	        assertEquals(Arrays.asList(breakfast), events.getItems());
+	        events = erc.findEvents(null, day1, day2, events.getNext(), 1);
+	        assertEquals(Arrays.asList(lunch), events.getItems());
+	        events = erc.findEvents(null, day1, day2, events.getNext(), 1);
+	        assertEquals(Arrays.asList(picnic), events.getItems());
+	        assertEquals(null, events.getNext());
+	        assertEquals(Arrays.asList(breakfast, lunch, picnic), erc.findEvents("name", null, null, null, 10).getItems());
+	    } catch (InvalidInputException e) {
+	        fail();
+	    }
+
+	    String error = null;
+	    try {
+	        erc.findParticipants(null, null, 0);
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Limit must be between 1 and 1000!", error);
+
+	    error = null;
+	    try {
+	        erc.findParticipants("name", erc.findParticipants(null, null, 1).getNext(), 1);
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Invalid cursor!", error);
+
+	    error = null;
+	    try {
+	        erc.findEvents(null, null, null, "not a cursor", 1);
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Invalid cursor!", error);
+
+	    error = null;
+	    try {
+	        erc.findEvents("name", day1, null, null, 1);
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Events in a range of days can only be sorted by date!", error);
+	}
+
+	@Test
+	public void testCursorAfterReload() {
+	    EventRegistrationService erc = new EventRegistrationService(rm);
+	    RegistrationManager reloaded = new RegistrationManager();
+	    try {
+	        for (String name : Arrays.asList("Cid", "Ann", "Bob", "Dan")) {
+	            erc.createParticipant(name);
+	            reloaded.addParticipant(new Participant(name));
+	        }
+	        String next = erc.findParticipants(null, null, 2).getNext();
+	        String expired = erc.findParticipants(null, null, 1).getNext();
+
+	        // the model loaded again numbers the participants anew, the cursor
+	        // continues after Ann
+	        reloaded.addParticipant(new Participant("Eve"));
+	        EventRegistrationService restarted = new EventRegistrationService(reloaded);
+	        restarted.deleteParticipant(reloaded.getParticipant("Cid"));
+	        Page<Participant> page = restarted.findParticipants(null, next, 2);
+	        assertEquals(Arrays.asList("Bob", "Dan"), names(page.getItems()));
+	        page = restarted.findParticipants(null, page.getNext(), 2);
+	        assertEquals(Arrays.asList("Eve"), names(page.getItems()));
+
+	        String error = null;
+	        try {
+	            restarted.findParticipants(null, expired, 2);
+	        } catch (InvalidInputException e) {
+	            error = e.getMessage();
+	        }
+	        assertEquals("Cursor has expired!", error);
+	    } catch (InvalidInputException e) {
+	        fail();
+	    } finally {
+	        reloaded.delete();
+	    }
+	}
+
+	private static List<String> names(List<Participant> participants) {
+	    List<String> names = new ArrayList<>();
+	    for (Participant p : participants)
+	        names.add(p.getName());
+	    return names;
+	}
+
+	@Test
+	public void testVersions() {
+	    Calendar c = Calendar.getInstance();
+	    c.set(2016, Calendar.OCTOBER, 16, 9, 00, 0);
+	    Date eventDate = new Date(c.getTimeInMillis());
+	    Time startTime = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 16, 10, 30, 0);
+	    Time endTime = new Time(c.getTimeInMillis());
+
+	    EventRegistrationService erc = new EventRegistrationService(rm);
+	    try {
+	        Participant ann = erc.createParticipant("Ann");
+	        Participant bob = erc.createParticipant("Bob");
+	        Event gig = erc.createEvent("Gig", eventDate, startTime, endTime, 1);
+	        long annVersion = erc.getParticipantVersion("Ann");
+	        long bobVersion = erc.getParticipantVersion("Bob");
+	        long gigVersion = erc.getEventVersion("Gig");
+	        long eventsVersion = erc.getEventsVersion();
+	        long participantsVersion = erc.getParticipantsVersion();
+	        long registrationsVersion = erc.getRegistrationsVersion();
+	        assertEquals(-1, erc.getParticipantVersion("Cid"));
+
+	        erc.register(ann, gig);
+	        assertTrue(erc.getParticipantVersion("Ann") > annVersion);
+	        assertTrue(erc.getRegistrationsVersion() > registrationsVersion);
+	        assertEquals(bobVersion, erc.getParticipantVersion("Bob"));
+	        assertEquals(gigVersion, erc.getEventVersion("Gig"));
+	        assertEquals(eventsVersion, erc.getEventsVersion());
+	        assertEquals(participantsVersion, erc.getParticipantsVersion());
+
+	        long waitlistVersion = erc.getWaitlistVersion("Gig");
+	        try {
+	            erc.register(bob, gig);
+	        } catch (WaitlistedException e) {
+	            // the event is full
+	        }
+	        assertTrue(erc.getWaitlistVersion("Gig") > waitlistVersion);
+	        assertEquals(bobVersion, erc.getParticipantVersion("Bob"));
+
+	        // Bob gets the seat
+	        annVersion = erc.getParticipantVersion("Ann");
+	        erc.unregister(ann, gig);
+	        assertTrue(erc.getParticipantVersion("Ann") > annVersion);
+	        assertTrue(erc.getParticipantVersion("Bob") > bobVersion);
+
+	        erc.deleteEvent(gig);
+	        assertEquals(-1, erc.getEventVersion("Gig"));
+	        assertTrue(erc.getEventsVersion() > eventsVersion);
+	        erc.createEvent("Gig", eventDate, startTime, endTime);
+	        assertTrue(erc.getEventVersion("Gig") > gigVersion);
+	    } catch (InvalidInputException e) {
+	        fail();
+	    }
+	}
+
+	@Test
+	public void testVersionsSetBeforePublishing() throws Exception {
+	    Participant ann = new Participant("Ann");
+	    rm.addParticipant(ann);
+	    AtomicBoolean done = new AtomicBoolean();
+	    ExecutorService executor = Executors.newSingleThreadExecutor();
+	    Future<?> writer = executor.submit(() -> {
+	        try {
+	            for (int i = 0; i < 20000; i++) {
+	                Event e = new Event("Event " + i, null, null, null);
+	                rm.addEvent(e);
+	                Registration r = new Registration(ann, e);
+	                rm.addRegistration(r);
+	                rm.removeRegistration(r);
+	            }
+	        } finally {
+	            done.set(true);
+	        }
+	    });
+	    // Ann makes every change of the registrations, and once a view is
+	    // published the versions of the entities it changed are set
+	    while (!done.get()) {
+	        ModelView view = rm.getView();
+	        assertTrue(rm.getParticipantVersion("Ann") >= view.getRegistrationsVersion());
+	        List<Event> events = view.getEvents();
+	        if (!events.isEmpty())
+	            assertTrue(rm.getEventVersion(events.get(events.size() - 1).getName()) >= view.getEventsVersion());
+	    }
+	    writer.get();
+	    executor.shutdown();
+	    assertEquals(rm.getVersion(), rm.getParticipantVersion("Ann"));
+	}
+
+	@Test
+	public void testConflicts() {
+	    Calendar c = Calendar.getInstance();
+	    c.set(2016, Calendar.OCTOBER, 16, 9, 00, 0);
+	    Date eventDate = new Date(c.getTimeInMillis());
+	    Time nine = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 16, 10, 30, 0);
+	    Time tenThirty = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 16, 12, 00, 0);
+	    Time twelve = new Time(c.getTimeInMillis());
+
+	    EventRegistrationService erc = new EventRegistrationService(rm);
+	    erc.setRejectConflicts(true);
+	    Participant oscar = null;
+	    Event game = null, concert = null, talk = null;
+	    try {
+	        oscar = erc.createParticipant("Oscar");
+	        game = erc.createEvent("Soccer Game", eventDate, nine, tenThirty);
+	        concert = erc.createEvent("Concert", eventDate, nine, twelve);
+	        talk = erc.createEvent("Talk", eventDate, tenThirty, twelve);
+	        erc.register(oscar, game);
+	        // starts when the game ends
+	        erc.register(oscar, talk);
+	    } catch (InvalidInputException e) {
+	        fail();
+	    }
+
+	    String error = null;
+	    try {
+	        erc.register(oscar, concert);
+	    } catch (InvalidInputException e) {
+	        error = e.getMessage();
+	    }
+	    assertEquals("Participant Oscar has already registered for Soccer Game at the same time", error);
+	    assertEquals(2, rm.getRegistrations().size());
+	    assertEquals(0, erc.findConflicts(oscar).size());
+
+	    // without rejection the overlap is allowed and listed
+	    erc.setRejectConflicts(false);
+	    try {
+	        erc.register(oscar, concert);
+	    } catch (InvalidInputException e) {
+	        fail();
+	    }
+	    assertEquals(Arrays.asList(game, concert, talk), erc.findConflicts(oscar));
+	    rm.removeRegistration(rm.getRegistration("Oscar", "Concert"));
+	    assertEquals(0, erc.findConflicts(oscar).size());
+	}
+
+	@Test
+	public void testPromotionSkipsConflicts() throws Exception {
+	    Calendar c = Calendar.getInstance();
+	    c.set(2016, Calendar.OCTOBER, 16, 9, 00, 0);
+	    Date eventDate = new Date(c.getTimeInMillis());
+	    Time nine = new Time(c.getTimeInMillis());
+	    c.set(2016, Calendar.OCTOBER, 16, 12, 00, 0);
+	    Time twelve = new Time(c.getTimeInMillis());
+
+	    EventRegistrationService erc = new EventRegistrationService(rm);
+	    erc.setRejectConflicts(true);
+	    Participant ann = erc.createParticipant("Ann");
+	    Participant bob = erc.createParticipant("Bob");
+	    Participant cid = erc.createParticipant("Cid");
+	    Event gig = erc.createEvent("Gig", eventDate, nine, twelve, 1);
+	    Event fair = erc.createEvent("Fair", eventDate, nine, twelve);
+	    erc.register(ann, gig);
+	    for (Participant p : Arrays.asList(bob, cid)) {
+	        try {
+	            erc.register(p, gig);
+	            fail();
+	        } catch (WaitlistedException e) {
+	        }
+	    }
+	    // Bob registers for an overlapping event while waiting
+	    erc.register(bob, fair);
+
+	    erc.unregister(ann, gig);
+	    assertEquals(null, rm.getRegistration("Bob", "Gig"));
+	    assertTrue(rm.getRegistration("Cid", "Gig") != null);
+	    assertEquals(0, erc.getWaitlist(gig).size());
+	    assertEquals(0, erc.findConflicts(bob).size());
+	}
+
+	@Test
+	public void testOverlappingEventAgainstScan() {
+	    Calendar c = Calendar.getInstance();
+	    c.set(2016, Calendar.OCTOBER, 16, 0, 00, 0);
+	    long day = c.getTimeInMillis();
+	    Date eventDate = new Date(day);
+	    Participant p = new Participant("Oscar");
+	    rm.addParticipant(p);
+	    Random random = new Random(42);
+	    List<Event> events = new ArrayList<>();
+	    for (int i = 0; i < 200; i++) {
+	        long start = day + random.nextInt(24 * 60) * 60000L;
+	        long end = Math.min(start + random.nextInt(120) * 60000L, day + (24 * 60 - 1) * 60000L);
+	        Event e = new Event("Event" + i, eventDate, new Time(start), new Time(end));
+	        events.add(e);
+	        rm.addEvent(e);
+	    }
+	    List<Event> registered = new ArrayList<>();
+	    for (int i = 0; i < 2000; i++) {
+	        Event e = events.get(random.nextInt(events.size()));
+	        Event overlap = rm.getOverlappingEvent("Oscar", e);
+	        boolean expected = false;
+	        for (Event other : registered) {
+	            if (other.getStartTime().before(e.getEndTime()) && e.getStartTime().before(other.getEndTime()))
+	                expected = true;
+	        }
+	        assertEquals(expected, overlap != null);
+	        if (registered.contains(e)) {
+	            rm.removeRegistration(rm.getRegistration("Oscar", e.getName()));
+	            registered.remove(e);
+	        } else {
+	            rm.addRegistration(new Registration(p, e));
+	            registered.add(e);
+	        }
+	    }
+	}
+
+	@Test
+	public void testModelView() {
+	    EventRegistrationService erc = new EventRegistrationService(rm);
+	    ModelView before = erc.getModelView();
+	    Participant p = null;
+	    Event e = null;
+	    try {
+	        p = erc.createParticipant("Oscar");
+	        e = erc.createEvent("Concert", new Date(0), new Time(0), new Time(0));
+	        erc.register(p, e);
+	    } catch (InvalidInputException ex) {
+	        fail();
+	    }
+
+	    // a published view never changes, later changes go into newer views
+	    assertEquals(0, before.getParticipants().size());
+	    assertEquals(0, before.getRegistrations().size());
+	    ModelView after = erc.getModelView();
+	    assertEquals(before.getVersion() + 3, after.getVersion());
+	    assertEquals(Arrays.asList(p), after.getParticipants());
+	    assertEquals(Arrays.asList(e), after.getEvents());
+	    assertEquals(1, after.getRegistrations().size());
+
+	    rm.removeParticipant(p);
+	    assertEquals(Arrays.asList(p), after.getParticipants());
+	    assertEquals(0, erc.getModelView().getParticipants().size());
+	    assertEquals(0, erc.findAllParticipants().size());
+	    // the registration of the participant is removed with them
+	    assertEquals(0, erc.findAllRegistrations().size());
+	    assertEquals(after.getVersion() + 2, rm.getVersion());
+	    try {
+	        after.getParticipants().add(p);
+	        fail();
+	    } catch (UnsupportedOperationException ex) {
+	    }
+	}
 	
 	@Test
 	public void testCreateEventEmpty() {
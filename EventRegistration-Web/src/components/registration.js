@@ -9,6 +9,15 @@ var AXIOS = axios.create({
   headers: { 'Access-Control-Allow-Origin': frontendUrl }
 })
 
+// The backend returns lists one page at a time, with the cursor of the next
+// page in the X-Next-Cursor header; more pages are only loaded when asked for
+function getPage(path, after) {
+  return AXIOS.get(path, { params: { after: after } })
+    .then(response => {
+      return { items: response.data, next: response.headers['x-next-cursor'] || null }
+    })
+}
+
 function ParticipantDto(name) {
   this.name = name
   this.events = []
@@ -26,9 +35,15 @@ export default {
   data() {
     return {
       participants: [],
+      // cursor of the next page, and a count of the loads so that the page of
+      // an older load, or a page that was appended already, is dropped
+      participantsNext: null,
+      participantsLoads: 0,
       newParticipant: '',
       errorParticipant: '',
       events: [],
+      eventsNext: null,
+      eventsLoads: 0,
       newEvent: {},
       newRegistration: { participant: '', event: '' },
       errorRegistration: '',
@@ -37,26 +52,39 @@ export default {
     }
   },
   created: function() {
-    // Initializing participants from backend
-    AXIOS.get('/participants/')
-      .then(response => {
-        // JSON responses are automatically parsed.
-        this.participants = response.data
-      })
-      .catch(e => {
-        this.errorParticipant = e;
-      });
-
-    // Initializing events from backend
-    AXIOS.get('/events/')
-      .then(response => {
-        // JSON responses are automatically parsed.
-        this.events = response.data
-      }).catch(e => {
-        this.errorEvent = e;
-      })
+    // Initializing the first pages of participants and events from backend
+    this.loadParticipants(false)
+    this.loadEvents(false)
   },
   methods: {
+    // Loads the first page, or appends the next one
+    loadParticipants: function(more) {
+      var load = more ? this.participantsLoads : ++this.participantsLoads
+      var after = more ? this.participantsNext : null
+      getPage('/participants/', after)
+        .then(page => {
+          if (load !== this.participantsLoads || (more && after !== this.participantsNext)) return
+          // JSON responses are automatically parsed.
+          this.participants = more ? this.participants.concat(page.items) : page.items
+          this.participantsNext = page.next
+        })
+        .catch(e => {
+          this.errorParticipant = e;
+        });
+    },
+    loadEvents: function(more) {
+      var load = more ? this.eventsLoads : ++this.eventsLoads
+      var after = more ? this.eventsNext : null
+      getPage('/events/', after)
+        .then(page => {
+          if (load !== this.eventsLoads || (more && after !== this.eventsNext)) return
+          // JSON responses are automatically parsed.
+          this.events = more ? this.events.concat(page.items) : page.items
+          this.eventsNext = page.next
+        }).catch(e => {
+          this.errorEvent = e;
+        })
+    },
     createParticipant: function(participantName) {
       AXIOS.post(`/participants/` + participantName, {}, {
           params: {}
@@ -97,11 +125,13 @@ export default {
           this.newRegistration = { participant: '', event: '' }
           this.errorRegistration = ''
 
-          //update participant
-          AXIOS.get('/participants/')
+          //update participant, the pages loaded so far stay
+          var name = newRegistration.participant
+          AXIOS.get('/participants/' + name)
             .then(response => {
               // JSON responses are automatically parsed.
-              this.participants = response.data
+              var index = this.participants.findIndex(p => p.name === name)
+              if (index >= 0) this.participants.splice(index, 1, response.data)
             })
             .catch(e => {
               this.errorParticipant = e;